@@ -17,14 +17,28 @@
  */
 package de.linearbits.subframe;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import de.linearbits.subframe.Calibration.Clock;
+import de.linearbits.subframe.GarbageCollection.Activity;
 import de.linearbits.subframe.Measures.Visibility;
 import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.DoubleAnalyzer;
+import de.linearbits.subframe.analyzer.SequenceAnalyzer;
+import de.linearbits.subframe.analyzer.TimedAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.SampleBuffer;
+import de.linearbits.subframe.analyzer.stream.StreamCountBelowAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamSteadyStateAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamTimeSeriesAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamSteadyStateAnalyzer.Result;
 import de.linearbits.subframe.io.CSVFile;
+import de.linearbits.subframe.io.ResultSink;
+import de.linearbits.subframe.io.ResultSinkMemory;
 
 /**
  * The central benchmark class. Allows collecting measurements and returning the
@@ -33,22 +47,147 @@ import de.linearbits.subframe.io.CSVFile;
  */
 public class Benchmark {
 
+    /**
+     * A frozen schema, which stores the analyzer templates of all measures in one array.
+     * Analyzers of measure <code>i</code> are stored at indices <code>[offsets[i], offsets[i+1])</code>.
+     * 
+     * @author Fabian Prasser
+     */
+    private static class Schema {
+
+        /** Labels of the measures */
+        private final String[]      labels;
+        /** Analyzer templates of all measures */
+        private final Analyzer<?>[] templates;
+        /** Offsets of the analyzers of each measure, with one additional trailing entry */
+        private final int[]         offsets;
+        /** Template for sample buffers, null if array lists are used */
+        private final SampleBuffer  buffer;
+
+        /**
+         * Creates a new schema
+         * @param labels
+         * @param analyzers
+         * @param buffer
+         */
+        private Schema(List<String> labels, List<List<Analyzer<?>>> analyzers, SampleBuffer buffer) {
+            this.labels = labels.toArray(new String[labels.size()]);
+            this.buffer = buffer;
+            this.offsets = new int[this.labels.length + 1];
+            int size = 0;
+            for (int i = 0; i < this.labels.length; i++) {
+                offsets[i] = size;
+                size += analyzers.get(i).size();
+            }
+            offsets[this.labels.length] = size;
+            this.templates = new Analyzer<?>[size];
+            int index = 0;
+            for (int i = 0; i < this.labels.length; i++) {
+                for (Analyzer<?> a : analyzers.get(i)) {
+                    templates[index++] = a;
+                }
+            }
+        }
+
+        /**
+         * Creates new instances of all analyzers
+         * @return
+         */
+        private Analyzer<?>[] newInstances() {
+            Analyzer<?>[] result = new Analyzer<?>[templates.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = templates[i].newInstance();
+            }
+            
+            // Buffered analyzers of one measure share their values
+            for (int i = 0; i < labels.length; i++) {
+                List<BufferedAnalyzer> buffered = new ArrayList<BufferedAnalyzer>();
+                for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                    if (result[j] instanceof BufferedAnalyzer) {
+                        buffered.add((BufferedAnalyzer) result[j]);
+                    }
+                }
+                if (buffer == null) {
+                    
+                    // Array lists are only shared by analyzers with compatible growth settings
+                    List<List<BufferedAnalyzer>> groups = new ArrayList<List<BufferedAnalyzer>>();
+                    for (BufferedAnalyzer analyzer : buffered) {
+                        List<BufferedAnalyzer> group = null;
+                        for (List<BufferedAnalyzer> candidate : groups) {
+                            if (candidate.get(0).canShare(analyzer)) {
+                                group = candidate;
+                                break;
+                            }
+                        }
+                        if (group == null) {
+                            group = new ArrayList<BufferedAnalyzer>();
+                            groups.add(group);
+                        }
+                        group.add(analyzer);
+                    }
+                    for (List<BufferedAnalyzer> group : groups) {
+                        BufferedAnalyzer.share(group.toArray(new BufferedAnalyzer[group.size()]));
+                    }
+                } else if (!buffered.isEmpty()) {
+                    BufferedAnalyzer.share(buffer.newInstance(), buffered.toArray(new BufferedAnalyzer[buffered.size()]));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A single run
+     * 
+     * @author Fabian Prasser
+     */
+    private static class Run {
+
+        /** Data of the run */
+        private final String[]      data;
+        /** Schema of the run */
+        private final Schema        schema;
+        /** Analyzers of the run, as defined by the schema */
+        private final Analyzer<?>[] analyzers;
+
+        /**
+         * Creates a new run
+         * @param data
+         * @param schema
+         */
+        private Run(String[] data, Schema schema) {
+            this.data = data;
+            this.schema = schema;
+            this.analyzers = schema.newInstances();
+        }
+    }
+
     /** Id to label */
-    private Map<Integer, String>            measureToString = new HashMap<Integer, String>();
+    private List<String>              measureToString = new ArrayList<String>();
     /** Label to id */
-    private Map<String, Integer>            stringToMeasure = new HashMap<String, Integer>();
-    /** Analyzer<?>s for each measurement */
-    private Map<Integer, List<Analyzer<?>>> analyzers       = new HashMap<Integer, List<Analyzer<?>>>();
-    /** All analyzers for each run */
-    private List<Analyzer<?>[][]>           runs            = new ArrayList<Analyzer<?>[][]>();
-    /** Data for each run */
-    private List<String[]>                  runData         = new ArrayList<String[]>();
+    private Map<String, Integer>      stringToMeasure = new HashMap<String, Integer>();
+    /** Analyzers for each measurement */
+    private List<List<Analyzer<?>>>   analyzers       = new ArrayList<List<Analyzer<?>>>();
+    /** The current schema, null if it needs to be rebuilt */
+    private Schema                    schema          = null;
+    /** All runs */
+    private List<Run>                 runs            = new ArrayList<Run>();
     /** The current run */
-    private Analyzer<?>[][]                 currentRun      = null;
+    private Run                       current         = null;
+    /** Analyzers of the current run */
+    private Analyzer<?>[]             currentRun      = null;
+    /** Offsets of the analyzers of each measure in the current run */
+    private int[]                     currentOffsets  = null;
     /** The measures */
-    protected Measures                      measures;
+    protected Measures                measures;
     /** Labels for run data */
-    private final String[]                  runHeader;
+    private final String[]            runHeader;
+    /** Sink for finished runs, null if all runs are kept in memory */
+    private ResultSink                sink            = null;
+    /** Template for sample buffers of buffered analyzers, null if array lists are used */
+    private SampleBuffer              sampleBuffer    = null;
+    /** Calibration used for subtracting the overhead of clocks, null if disabled */
+    private volatile Calibration      calibration     = null;
 
     /**
      * Creates a new benchmark, with an additional column called "Run" for run data
@@ -71,12 +210,22 @@ public class Benchmark {
      * @param analyzer
      */
     public synchronized void addAnalyzer(int measure, Analyzer<?> analyzer) {
-        List<Analyzer<?>> list = analyzers.get(measure);
-        if (list == null) {
-            list = new ArrayList<Analyzer<?>>();
-            analyzers.put(measure, list);
-        }
-        list.add(analyzer);
+        analyzers.get(measure).add(analyzer);
+        schema = null;
+    }
+
+    /**
+     * Adds an analyzer to the given measure, which counts values below the granularity of the
+     * given clock. Such values cannot be distinguished from zero. Calibrates the clocks if
+     * this has not been done yet. The label is {@link Analyzer#COUNT_BELOW(String)} with
+     * {@link Analyzer#GRANULARITY}, which does not depend on the calibrated value. The value
+     * is available via {@link Calibration#getGranularity(Clock)}.
+     * @see Calibration
+     * @param measure
+     * @param clock
+     */
+    public void addGranularityAnalyzer(int measure, Clock clock) {
+        addAnalyzer(measure, new StreamCountBelowAnalyzer(Analyzer.GRANULARITY, Calibration.getInstance().getGranularity(clock)));
     }
 
     /**
@@ -85,7 +234,7 @@ public class Benchmark {
      * @param measure
      */
     public void addCpuTime(int measure) {
-        this.addValue(measure, measures.getCpuTime());
+        this.addValue(measure, getLocalMeasures().getCpuTime());
     }
 
     /**
@@ -94,7 +243,31 @@ public class Benchmark {
      * @param measure
      */
     public void addCurrentThreadCpuTime(int measure) {
-        this.addValue(measure, measures.getCurrentThreadCpuTime());
+        this.addValue(measure, getLocalMeasures().getCurrentThreadCpuTime());
+    }
+
+    /**
+     * Adds analyzers that detect the end of the warm-up phase of the given measure with MSER-5 and
+     * report the number of warm-up values as well as the arithmetic mean and standard deviation in
+     * the steady state. Values must be added in the order in which they are measured.
+     * @see StreamSteadyStateAnalyzer
+     * @param measure
+     */
+    public void addSteadyStateAnalyzers(int measure) {
+        addSteadyStateAnalyzers(measure, StreamSteadyStateAnalyzer.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Adds analyzers that detect the end of the warm-up phase of the given measure with MSER
+     * for the given batch size
+     * @see #addSteadyStateAnalyzers(int)
+     * @param measure
+     * @param batchSize
+     */
+    public void addSteadyStateAnalyzers(int measure, int batchSize) {
+        for (Result result : Result.values()) {
+            addAnalyzer(measure, new StreamSteadyStateAnalyzer(result, batchSize));
+        }
     }
 
     /**
@@ -103,7 +276,7 @@ public class Benchmark {
      * @param measure
      */
     public void addCurrentThreadSystemTime(int measure) {
-        this.addValue(measure, measures.getCurrentThreadSystemTime());
+        this.addValue(measure, getLocalMeasures().getCurrentThreadSystemTime());
     }
 
     /**
@@ -112,7 +285,7 @@ public class Benchmark {
      * @param measure
      */
     public void addCurrentThreadUserTime(int measure) {
-        this.addValue(measure, measures.getCurrentThreadUserTime());
+        this.addValue(measure, getLocalMeasures().getCurrentThreadUserTime());
     }
 
     /**
@@ -124,7 +297,7 @@ public class Benchmark {
      * @param estimateArrays
      */
     public void addDeepSize(int measure, Object object, Visibility filter, boolean estimateArrays) {
-        this.addValue(measure, measures.getDeepSize(object, filter, estimateArrays));
+        this.addValue(measure, getLocalMeasures().getDeepSize(object, filter, estimateArrays));
     }
 
     /**
@@ -134,7 +307,7 @@ public class Benchmark {
      * @param object
      */
     public void addDeepSize(int measure, Object object) {
-        this.addValue(measure, measures.getDeepSize(object));
+        this.addValue(measure, getLocalMeasures().getDeepSize(object));
     }
 
     /**
@@ -143,7 +316,7 @@ public class Benchmark {
      * @param measure
      */
     public void addFreeBytesGCMX(int measure) {
-        this.addValue(measure, measures.getUsedBytesGCMX());
+        this.addValue(measure, getLocalMeasures().getUsedBytesGCMX());
     }
 
     /**
@@ -152,7 +325,7 @@ public class Benchmark {
      * @param measure
      */
     public void addFreeBytesGC(int measure) {
-        this.addValue(measure, measures.getUsedBytesGC());
+        this.addValue(measure, getLocalMeasures().getUsedBytesGC());
     }
 
     /**
@@ -161,7 +334,7 @@ public class Benchmark {
      * @param measure
      */
     public void addFreeBytesMX(int measure) {
-        this.addValue(measure, measures.getUsedBytesMX());
+        this.addValue(measure, getLocalMeasures().getUsedBytesMX());
     }
 
     /**
@@ -170,7 +343,7 @@ public class Benchmark {
      * @param measure
      */
     public void addJVMCpuTime(int measure) {
-        this.addValue(measure, measures.getJVMCpuTime());
+        this.addValue(measure, getLocalMeasures().getJVMCpuTime());
     }
 
     /**
@@ -184,12 +357,26 @@ public class Benchmark {
         if (id == null) {
             id = stringToMeasure.size();
             stringToMeasure.put(label, id);
-            measureToString.put(id, label);
+            measureToString.add(label);
+            analyzers.add(new ArrayList<Analyzer<?>>());
+            schema = null;
         }
         measures = new Measures(this.measureToString.size());
         return id;
     }
     
+    /**
+     * Adds the given number of operations, e.g. requests or bytes, which have been completed at this point in time.
+     * Analyzers implementing {@link TimedAnalyzer} receive the current value of {@link System#nanoTime()} as a timestamp,
+     * which allows them to compute rates. Other analyzers receive the number of operations.
+     * @see #addTimedValue(int, long, double)
+     * @param measure
+     * @param operations
+     */
+    public void addOperations(int measure, long operations) {
+        addTimedValue(measure, System.nanoTime(), operations);
+    }
+
     /**
      * Creates a new run. The provided data becomes the run data.
      * @param data
@@ -210,19 +397,111 @@ public class Benchmark {
         for (String d : data) {
             CSVFile.checkFieldValue(d);
         }
-        runData.add(data);
         if (data.length != runHeader.length) { throw new RuntimeException("Invalid run data"); }
-        Analyzer<?>[][] run = new Analyzer<?>[analyzers.size()][];
-        for (int i : analyzers.keySet()) {
-            List<Analyzer<?>> list = analyzers.get(i);
-            run[i] = new Analyzer<?>[list.size()];
-            int index = 0;
-            for (Analyzer<?> a : list) {
-                run[i][index++] = a.newInstance();
+        if (schema == null) {
+            schema = new Schema(measureToString, analyzers, sampleBuffer);
+        }
+        finishRun();
+        Run run = new Run(data, schema);
+        if (sink == null) {
+            runs.add(run);
+        }
+        current = run;
+        currentRun = run.analyzers;
+        currentOffsets = schema.offsets;
+    }
+
+    /**
+     * Closes the result sink after finishing the current run. Does nothing if
+     * no result sink has been set.
+     * @see #setResultSink(ResultSink)
+     */
+    public synchronized void closeResultSink() {
+        if (sink == null) {
+            return;
+        }
+        finishRun();
+        try {
+            sink.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Finishes the current run. No further values may be added to the run. If a result
+     * sink has been set, the results of the run are written to the sink and the
+     * analyzers of the run are released.
+     * This method is called implicitly when a new run is created.
+     */
+    public synchronized void finishRun() {
+        if (current == null) {
+            return;
+        }
+        if (sink != null) {
+            Map<String, Map<String, Integer>> map = new HashMap<String, Map<String, Integer>>();
+            List<String> header1 = new ArrayList<String>();
+            List<String> header2 = new ArrayList<String>();
+            initHeader(header1, header2);
+            createHeader(map, header1, header2, current);
+            try {
+                sink.write(header1.toArray(new String[header1.size()]),
+                           header2.toArray(new String[header2.size()]),
+                           createLine(map, header1.size(), current));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
+            
+            // The run is not needed anymore, which allows buffers to be reused
+            for (Analyzer<?> analyzer : current.analyzers) {
+                if (analyzer instanceof BufferedAnalyzer) {
+                    ((BufferedAnalyzer) analyzer).clear();
+                }
+            }
+        }
+        current = null;
+        currentRun = null;
+        currentOffsets = null;
+    }
+
+    /**
+     * Enables or disables subtracting the overhead of reading a clock from the values measured
+     * with timers and thread times. The overhead is determined by {@link Calibration#getInstance()},
+     * which calibrates the clocks when it is called for the first time. Negative values are
+     * rounded to zero.
+     * @param enabled
+     */
+    public void setOverheadCorrection(boolean enabled) {
+        this.calibration = enabled ? Calibration.getInstance() : null;
+    }
+
+    /**
+     * Sets the kind of buffer in which buffered analyzers store their values, e.g. a
+     * {@link de.linearbits.subframe.analyzer.buffered.SampleBufferOffHeap} to keep large numbers of samples out of the Java heap
+     * or a {@link de.linearbits.subframe.analyzer.buffered.SampleBufferChunked} to avoid copying when buffers grow.
+     * Each measure of each run obtains its own buffer via {@link SampleBuffer#newInstance()}. If a result sink
+     * has been set, buffers are cleared when a run is finished, which allows pooled chunks to be reused.
+     * Affects all runs created afterwards. Passing <code>null</code> restores array lists.
+     * @param template
+     */
+    public synchronized void setSampleBuffer(SampleBuffer template) {
+        if (template != null && template.size() != 0) {
+            throw new IllegalArgumentException("Template must not contain any values");
+        }
+        this.sampleBuffer = template;
+        this.schema = null;
+    }
+
+    /**
+     * Sets a sink to which the results of each run are written as soon as the run is finished.
+     * This way, only the current run is kept in memory. Must be called before the first run is created.
+     * @param sink
+     */
+    public synchronized void setResultSink(ResultSink sink) {
+        if (!runs.isEmpty() || current != null) {
+            throw new IllegalStateException("Result sink must be set before the first run is created");
         }
-        runs.add(run);
-        currentRun = run;
+        this.sink = sink;
     }
 
     /**
@@ -232,7 +511,7 @@ public class Benchmark {
      * @param obj
      */
     public void addSize(int measure, Object obj) {
-        this.addValue(measure, measures.getSize(obj));
+        this.addValue(measure, getLocalMeasures().getSize(obj));
     }
 
     /**
@@ -241,7 +520,7 @@ public class Benchmark {
      * @param measure
      */
     public void addSystemTime(int measure) {
-        this.addValue(measure, measures.getSystemTime());
+        this.addValue(measure, getLocalMeasures().getSystemTime());
     }
 
     /**
@@ -250,7 +529,29 @@ public class Benchmark {
      * @param measure
      */
     public void addStopTimer(int measure) {
-        this.addValue(measure, measures.stopTimer(measure));
+        this.addValue(measure, correct(getLocalMeasures().stopTimer(measure), Clock.WALL_CLOCK));
+    }
+
+    /**
+     * Stops the timer, which has been used to measure the given number of invocations of an
+     * operation, and adds <code>invocations</code> values that sum up to the measured time. The
+     * time is distributed as evenly as possible in whole nanoseconds, i.e. the values are
+     * <code>time / invocations</code> rounded down or up, so that they can also be stored in a
+     * {@link de.linearbits.subframe.analyzer.buffered.SampleBufferCompressed}. This allows measuring
+     * operations that are shorter than the granularity or the overhead of the clock.
+     * @param measure
+     * @param invocations
+     */
+    public void addStopTimer(int measure, int invocations) {
+        if (invocations <= 0) {
+            throw new IllegalArgumentException("Invalid number of invocations: " + invocations);
+        }
+        long time = correct(getLocalMeasures().stopTimer(measure), Clock.WALL_CLOCK);
+        long value = time / invocations;
+        long remainder = time % invocations;
+        for (int i = 0; i < invocations; i++) {
+            this.addValue(measure, i < remainder ? value + 1 : value);
+        }
     }
 
     /**
@@ -259,7 +560,27 @@ public class Benchmark {
      * @param measure
      */
     public void addStopAndStartTimer(int measure) {
-        this.addValue(measure, measures.stopAndStartTimer(measure));
+        this.addValue(measure, correct(getLocalMeasures().stopAndStartTimer(measure), Clock.WALL_CLOCK));
+    }
+
+    /**
+     * Stops the timer, adds its value corrected for coordinated omission and restarts it
+     * @see #addValueWithExpectedInterval(int, double, long)
+     * @param measure
+     * @param expectedInterval
+     */
+    public void addStopAndStartTimerWithExpectedInterval(int measure, long expectedInterval) {
+        this.addValueWithExpectedInterval(measure, correct(getLocalMeasures().stopAndStartTimer(measure), Clock.WALL_CLOCK), expectedInterval);
+    }
+
+    /**
+     * Stops the timer and adds its value corrected for coordinated omission
+     * @see #addValueWithExpectedInterval(int, double, long)
+     * @param measure
+     * @param expectedInterval
+     */
+    public void addStopTimerWithExpectedInterval(int measure, long expectedInterval) {
+        this.addValueWithExpectedInterval(measure, correct(getLocalMeasures().stopTimer(measure), Clock.WALL_CLOCK), expectedInterval);
     }
 
     /**
@@ -268,7 +589,7 @@ public class Benchmark {
      * @param measure
      */
     public void addStopCurrentThreadCpuTime(int measure) {
-        this.addValue(measure, measures.stopCurrentThreadCpuTime(measure));
+        this.addValue(measure, correct(getLocalMeasures().stopCurrentThreadCpuTime(measure), Clock.CURRENT_THREAD_CPU_TIME));
     }
 
     /**
@@ -277,7 +598,7 @@ public class Benchmark {
      * @param measure
      */
     public void addStopCurrentThreadUserTime(int measure) {
-        this.addValue(measure, measures.stopCurrentThreadUserTime(measure));
+        this.addValue(measure, correct(getLocalMeasures().stopCurrentThreadUserTime(measure), Clock.CURRENT_THREAD_USER_TIME));
     }
 
     /**
@@ -286,7 +607,7 @@ public class Benchmark {
      * @param measure
      */
     public void addStopCurrentThreadSystemTime(int measure) {
-        this.addValue(measure, measures.stopCurrentThreadSystemTime(measure));
+        this.addValue(measure, correct(getLocalMeasures().stopCurrentThreadSystemTime(measure), Clock.CURRENT_THREAD_SYSTEM_TIME));
     }
     
 
@@ -296,8 +617,8 @@ public class Benchmark {
      * @param measure
      */
     public void addStopAndStartCurrentThreadCpuTime(int measure) {
-        this.addValue(measure, measures.stopCurrentThreadCpuTime(measure));
-        measures.startCurrentThreadCpuTime(measure);
+        this.addValue(measure, correct(getLocalMeasures().stopCurrentThreadCpuTime(measure), Clock.CURRENT_THREAD_CPU_TIME));
+        getLocalMeasures().startCurrentThreadCpuTime(measure);
     }
 
     /**
@@ -306,8 +627,8 @@ public class Benchmark {
      * @param measure
      */
     public void addStopAndStartCurrentThreadUserTime(int measure) {
-        this.addValue(measure, measures.stopCurrentThreadUserTime(measure));
-        measures.startCurrentThreadUserTime(measure);
+        this.addValue(measure, correct(getLocalMeasures().stopCurrentThreadUserTime(measure), Clock.CURRENT_THREAD_USER_TIME));
+        getLocalMeasures().startCurrentThreadUserTime(measure);
     }
 
     /**
@@ -316,8 +637,48 @@ public class Benchmark {
      * @param measure
      */
     public void addStopAndStartCurrentThreadSystemTime(int measure) {
-        this.addValue(measure, measures.stopCurrentThreadSystemTime(measure));
-        measures.startCurrentThreadSystemTime(measure);
+        this.addValue(measure, correct(getLocalMeasures().stopCurrentThreadSystemTime(measure), Clock.CURRENT_THREAD_SYSTEM_TIME));
+        getLocalMeasures().startCurrentThreadSystemTime(measure);
+    }
+
+    /**
+     * Stops the measurement and adds its value
+     * @see Measures#stopAllocatedBytes(int)
+     * @param measure
+     */
+    public void addStopAllocatedBytes(int measure) {
+        this.addValue(measure, getLocalMeasures().stopAllocatedBytes(measure));
+    }
+
+    /**
+     * Stops the measurement and adds its value
+     * @see Measures#stopAllocatedBytes(int)
+     * @param measure
+     */
+    public void addStopAndStartAllocatedBytes(int measure) {
+        this.addValue(measure, getLocalMeasures().stopAllocatedBytes(measure));
+        getLocalMeasures().startAllocatedBytes(measure);
+    }
+
+    /**
+     * Stops the measurement and adds its value
+     * @see Measures#stopGCActivity(int, Activity)
+     * @param measure
+     * @param activity
+     */
+    public void addStopGCActivity(int measure, Activity activity) {
+        this.addValue(measure, getLocalMeasures().stopGCActivity(measure, activity));
+    }
+
+    /**
+     * Stops the measurement and adds its value
+     * @see Measures#stopGCActivity(int, Activity)
+     * @param measure
+     * @param activity
+     */
+    public void addStopAndStartGCActivity(int measure, Activity activity) {
+        this.addValue(measure, getLocalMeasures().stopGCActivity(measure, activity));
+        getLocalMeasures().startGCActivity(measure, activity);
     }
 
     /**
@@ -326,7 +687,7 @@ public class Benchmark {
      * @param measure
      */
     public void addStopUsedBytesGCMX(int measure) {
-        this.addValue(measure, measures.stopUsedBytesGCMX(measure));
+        this.addValue(measure, getLocalMeasures().stopUsedBytesGCMX(measure));
     }
     
     /**
@@ -335,7 +696,7 @@ public class Benchmark {
      * @param measure
      */
     public void addStopUsedBytesGC(int measure) {
-        this.addValue(measure, measures.stopUsedBytesGC(measure));
+        this.addValue(measure, getLocalMeasures().stopUsedBytesGC(measure));
     }
     
 
@@ -345,7 +706,7 @@ public class Benchmark {
      * @param measure
      */
     public void addStopUsedBytesMX(int measure) {
-        this.addValue(measure, measures.stopUsedBytesMX(measure));
+        this.addValue(measure, getLocalMeasures().stopUsedBytesMX(measure));
     }
 
     /**
@@ -354,8 +715,8 @@ public class Benchmark {
      * @param measure
      */
     public void addStopAndStartUsedBytesGCMX(int measure) {
-        this.addValue(measure, measures.stopUsedBytesGCMX(measure));
-        measures.startUsedBytesGCMX(measure);
+        this.addValue(measure, getLocalMeasures().stopUsedBytesGCMX(measure));
+        getLocalMeasures().startUsedBytesGCMX(measure);
     }
     
     /**
@@ -364,8 +725,8 @@ public class Benchmark {
      * @param measure
      */
     public void addStopAndStartUsedBytesGC(int measure) {
-        this.addValue(measure, measures.stopUsedBytesGC(measure));
-        measures.startUsedBytesGC(measure);
+        this.addValue(measure, getLocalMeasures().stopUsedBytesGC(measure));
+        getLocalMeasures().startUsedBytesGC(measure);
     }
     
 
@@ -375,8 +736,8 @@ public class Benchmark {
      * @param measure
      */
     public void addStopAndStartUsedBytesMX(int measure) {
-        this.addValue(measure, measures.stopUsedBytesMX(measure));
-        measures.startUsedBytesMX(measure);
+        this.addValue(measure, getLocalMeasures().stopUsedBytesMX(measure));
+        getLocalMeasures().startUsedBytesMX(measure);
     }
     
     /**
@@ -385,7 +746,7 @@ public class Benchmark {
      * @param measure
      */
     public void addUserTime(int measure) {
-        this.addValue(measure, measures.getUserTime());
+        this.addValue(measure, getLocalMeasures().getUserTime());
     }
     
     /**
@@ -395,31 +756,33 @@ public class Benchmark {
      */
     @SuppressWarnings("unchecked")
     public void addValue(int measure, Object value) {
-        
-            Analyzer<?>[] analyzers = currentRun[measure];
-            for (int i = 0; i < analyzers.length; i++) {
-                try {
-                    ((Analyzer<Object>)analyzers[i]).add(value);
-                } catch (ClassCastException e) {
-                    throw new RuntimeException("Incompatible analyzer for value of type 'object'");
-                }
+        Analyzer<?>[] analyzers = getCurrentRun();
+        int[] offsets = currentOffsets;
+        for (int i = offsets[measure], max = offsets[measure + 1]; i < max; i++) {
+            try {
+                ((Analyzer<Object>)analyzers[i]).add(value);
+            } catch (ClassCastException e) {
+                throw new RuntimeException("Incompatible analyzer for value of type 'object'");
             }
+        }
     }
+
     /**
      * Adds the given value
      * @param measure
      * @param value
      */
     public void addValue(int measure, Float value) {
-        addValue(measure, Double.valueOf(value));
+        addValue(measure, value.doubleValue());
     }
+
     /**
      * Adds the given value
      * @param measure
      * @param value
      */
     public void addValue(int measure, float value) {
-        addValue(measure, Double.valueOf(value));
+        addValue(measure, (double)value);
     }
 
     /**
@@ -428,7 +791,7 @@ public class Benchmark {
      * @param value
      */
     public void addValue(int measure, Long value) {
-        addValue(measure, Double.valueOf(value));
+        addValue(measure, value.doubleValue());
     }
     
     /**
@@ -437,7 +800,7 @@ public class Benchmark {
      * @param value
      */
     public void addValue(int measure, long value) {
-        addValue(measure, Double.valueOf(value));
+        addValue(measure, (double)value);
     }
 
     /**
@@ -446,7 +809,7 @@ public class Benchmark {
      * @param value
      */
     public void addValue(int measure, Character value) {
-        addValue(measure, Double.valueOf(value));
+        addValue(measure, (double)value.charValue());
     }
     
     /**
@@ -455,7 +818,7 @@ public class Benchmark {
      * @param value
      */
     public void addValue(int measure, char value) {
-        addValue(measure, Double.valueOf(value));
+        addValue(measure, (double)value);
     }
     
     /**
@@ -464,7 +827,7 @@ public class Benchmark {
      * @param value
      */
     public void addValue(int measure, Integer value) {
-        addValue(measure, Double.valueOf(value));
+        addValue(measure, value.doubleValue());
     }
     
     /**
@@ -473,16 +836,47 @@ public class Benchmark {
      * @param value
      */
     public void addValue(int measure, int value) {
-        addValue(measure, Double.valueOf(value));
+        addValue(measure, (double)value);
     }
     
     /**
-     * Adds the given value
+     * Adds the given value with the given timestamp in nanoseconds. Analyzers implementing {@link TimedAnalyzer}
+     * receive the timestamp, all other analyzers only receive the value.
+     * @param measure
+     * @param timestamp
+     * @param value
+     */
+    public void addTimedValue(int measure, long timestamp, double value) {
+        addTimedValue(getCurrentRun(), currentOffsets, measure, timestamp, value);
+    }
+
+    /**
+     * Adds the given latency of an operation that is part of a sequence of operations, which should
+     * be issued at the given expected interval (open-loop load). If the latency exceeds the interval,
+     * the operations that should have been issued while this operation was stalled would have been
+     * delayed as well. Their latencies are back-filled as <code>value - interval</code>,
+     * <code>value - 2 * interval</code>, and so on, as long as they exceed the interval. This corrects
+     * for coordinated omission, so that high percentiles, e.g. of histogram-based analyzers, reflect
+     * the latency experienced by users. All analyzers of the measure receive the corrected values.
+     * Analyzers implementing {@link SequenceAnalyzer}, e.g. the histogram-based ones, receive the
+     * back-filled values at once. All other analyzers receive each value individually, which costs
+     * time proportional to <code>value / expectedInterval</code>.
+     * @param measure
+     * @param value
+     * @param expectedInterval
+     */
+    public void addValueWithExpectedInterval(int measure, double value, long expectedInterval) {
+        addValueWithExpectedInterval(getCurrentRun(), currentOffsets, measure, value, expectedInterval);
+    }
+
+    /**
+     * Adds the given value. Analyzers implementing {@link DoubleAnalyzer} receive
+     * the primitive value, which avoids boxing.
      * @param measure
      * @param value
      */
     public void addValue(int measure, double value) {
-        addValue(measure, Double.valueOf(value));
+        addValue(getCurrentRun(), currentOffsets, measure, value);
     }
     
     /**
@@ -490,17 +884,8 @@ public class Benchmark {
      * @param measure
      * @param value
      */
-    @SuppressWarnings("unchecked")
     public void addValue(int measure, Double value) {
-        
-        Analyzer<?>[] analyzers = currentRun[measure];
-        for (int i = 0; i < analyzers.length; i++) {
-            try {
-                ((Analyzer<Double>)analyzers[i]).add(value);
-            } catch (ClassCastException e) {
-                throw new RuntimeException("Incompatible analyzer for value of type 'double'");
-            }
-        }
+        addValue(measure, value.doubleValue());
     }
     
     /**
@@ -508,7 +893,7 @@ public class Benchmark {
      * @return
      */
     public boolean isInstrumented(){
-        return measures.isInstrumented();
+        return getLocalMeasures().isInstrumented();
     }
 
     /**
@@ -529,61 +914,96 @@ public class Benchmark {
     }
 
     /**
-     * Returns the benchmark results as a csv file
+     * Returns the benchmark results as a csv file. If a result sink has been set, the current run
+     * is finished and the results are returned if the sink is a {@link ResultSinkMemory}.
      * @return
      */
     public synchronized CSVFile getResults() {
 
-        Map<String, Map<String, Integer>> map = new HashMap<String, Map<String, Integer>>();
-
-        // Init header
-        List<String> header1 = new ArrayList<String>();
-        List<String> header2 = new ArrayList<String>();
-
-        for (int i = 0; i < runHeader.length; i++) {
-            header1.add("");
-            header2.add(runHeader[i]);
+        // Results written to sink
+        if (sink != null) {
+            finishRun();
+            if (sink instanceof ResultSinkMemory) {
+                return ((ResultSinkMemory) sink).getFile();
+            }
+            throw new IllegalStateException("Results have been written to the result sink");
         }
 
         // Create header
-        for (int i = 0; i < runs.size(); i++) {
-            Analyzer<?>[][] analyzers = runs.get(i);
-            for (int j = 0; j < measureToString.size(); j++) {
-                String measure = measureToString.get(j);
-                for (Analyzer<?> a : analyzers[j]) {
-                    String label = a.getLabel();
-                    int index = getIndex(map, measure, label);
-                    if (index == -1) {
-                        setIndex(map, measure, label, header1.size());
-                        header1.add(measure);
-                        header2.add(label);
-                    }
-                }
-            }
+        Map<String, Map<String, Integer>> map = new HashMap<String, Map<String, Integer>>();
+        List<String> header1 = new ArrayList<String>();
+        List<String> header2 = new ArrayList<String>();
+        initHeader(header1, header2);
+        for (Run run : runs) {
+            createHeader(map, header1, header2, run);
         }
 
         // Create csv
         CSVFile csv = new CSVFile(header1.toArray(new String[0]), header2.toArray(new String[0]));
 
         // Write csv
-        for (int i = 0; i < runs.size(); i++) {
-            String[] line = new String[header1.size()];
-            for (int j = 0; j < runData.get(i).length; j++) {
-                line[j] = runData.get(i)[j];
+        for (Run run : runs) {
+            csv.addLine(createLine(map, header1.size(), run));
+        }
+
+        return csv;
+    }
+
+    /**
+     * Returns the time series recorded by the {@link StreamTimeSeriesAnalyzer} of the given measure
+     * as a csv file, with one line per interval and run. The run data is repeated in each line.
+     * The columns can be plotted with {@link de.linearbits.subframe.graph.Series2D}, e.g. using
+     * the field <code>(measure, "Time")</code> as the x-axis. Requires runs to be kept in memory.
+     * @param measure
+     * @return
+     */
+    public synchronized CSVFile getTimeSeries(int measure) {
+        if (sink != null) {
+            throw new IllegalStateException("Results have been written to the result sink");
+        }
+        String label = measureToString.get(measure);
+        String[] header1 = null;
+        String[] header2 = null;
+        List<String[]> lines = new ArrayList<String[]>();
+        for (Run run : runs) {
+            // Measures are never removed, so ids are stable across schemas
+            Schema schema = run.schema;
+            if (measure >= schema.labels.length) {
+                continue;
             }
-            Analyzer<?>[][] analyzers = runs.get(i);
-            for (int j = 0; j < measureToString.size(); j++) {
-                String measure = measureToString.get(j);
-                for (Analyzer<?> a : analyzers[j]) {
-                    String label = a.getLabel();
-                    int index = getIndex(map, measure, label);
-                    if (index == -1) { throw new RuntimeException("Invalid index"); }
-                    line[index] = a.getValue();
+            for (int k = schema.offsets[measure]; k < schema.offsets[measure + 1]; k++) {
+                if (run.analyzers[k] instanceof StreamTimeSeriesAnalyzer) {
+                    StreamTimeSeriesAnalyzer analyzer = (StreamTimeSeriesAnalyzer) run.analyzers[k];
+                    String[] header = analyzer.getHeader();
+                    if (header1 == null) {
+                        header1 = new String[runHeader.length + header.length];
+                        header2 = new String[header1.length];
+                        for (int i = 0; i < runHeader.length; i++) {
+                            header1[i] = "";
+                            header2[i] = runHeader[i];
+                        }
+                        for (int i = 0; i < header.length; i++) {
+                            header1[runHeader.length + i] = label;
+                            header2[runHeader.length + i] = header[i];
+                        }
+                    }
+                    for (String[] data : analyzer.getLines()) {
+                        String[] line = new String[header1.length];
+                        System.arraycopy(run.data, 0, line, 0, run.data.length);
+                        System.arraycopy(data, 0, line, runHeader.length, data.length);
+                        lines.add(line);
+                    }
+                    break;
                 }
             }
+        }
+        if (header1 == null) {
+            throw new IllegalArgumentException("No time series recorded for measure: " + label);
+        }
+        CSVFile csv = new CSVFile(header1, header2);
+        for (String[] line : lines) {
             csv.addLine(line);
         }
-
         return csv;
     }
 
@@ -594,12 +1014,31 @@ public class Benchmark {
     public synchronized Benchmark getSynchronized() {
         return new BenchmarkSynchronized(this);
     }
+
+    /**
+     * Returns a thread-safe instance of this class, in which each thread records values
+     * into its own buffers without locking. The buffers are merged into this benchmark
+     * when a run is finished or results are requested.
+     * @see BenchmarkThreadLocal
+     * @return
+     */
+    public synchronized Benchmark getThreadLocal() {
+        return new BenchmarkThreadLocal(this);
+    }
     
     /**
      * Runs a "heavy" GC
      */
     public void heavyGC() {
-        measures.heavyGC();
+        getLocalMeasures().heavyGC();
+    }
+
+    /**
+     * Runs a "heavy" GC, which returns when the heap has settled or the timeout has expired
+     * @param timeout in milliseconds
+     */
+    public void heavyGC(long timeout) {
+        getLocalMeasures().heavyGC(timeout);
     }
     
     /**
@@ -607,31 +1046,39 @@ public class Benchmark {
      * @param measure
      */
     public void startTimer(int measure) {
-        measures.startTimer(measure);
+        getLocalMeasures().startTimer(measure);
     }
 
     public void startCurrentThreadCpuTime(int measure) {
-        measures.startCurrentThreadCpuTime(measure);
+        getLocalMeasures().startCurrentThreadCpuTime(measure);
     }
 
     public void startCurrentThreadSystemTime(int measure) {
-        measures.startCurrentThreadSystemTime(measure);
+        getLocalMeasures().startCurrentThreadSystemTime(measure);
     }
 
     public void startCurrentThreadUserTime(int measure) {
-        measures.startCurrentThreadUserTime(measure);
+        getLocalMeasures().startCurrentThreadUserTime(measure);
     }
 
     public void startUsedBytesGCMX(int measure) {
-        measures.startUsedBytesGCMX(measure);
+        getLocalMeasures().startUsedBytesGCMX(measure);
+    }
+
+    public void startAllocatedBytes(int measure) {
+        getLocalMeasures().startAllocatedBytes(measure);
+    }
+
+    public void startGCActivity(int measure, Activity activity) {
+        getLocalMeasures().startGCActivity(measure, activity);
     }
 
     public void startUsedBytesGC(int measure) {
-        measures.startUsedBytesGC(measure);
+        getLocalMeasures().startUsedBytesGC(measure);
     }
 
     public void startUsedBytesMX(int measure) {
-        measures.startUsedBytesMX(measure);
+        getLocalMeasures().startUsedBytesMX(measure);
     }
 
     /**
@@ -639,10 +1086,10 @@ public class Benchmark {
      */
     public synchronized String toString() {
         StringBuilder b = new StringBuilder();
-        for (int i = 0; i < runs.size(); i++) {
-            int rdLength = runData.get(i).length;
+        for (Run run : runs) {
+            int rdLength = run.data.length;
             for (int j = 0; j < rdLength; j++) {
-                b.append(runData.get(i)[j]);
+                b.append(run.data[j]);
                 if (j < rdLength - 1) {
                     b.append(", ");
                 } else {
@@ -650,10 +1097,11 @@ public class Benchmark {
                 }
             }
 
-            Analyzer<?>[][] analyzers = runs.get(i);
-            for (int j = 0; j < measureToString.size(); j++) {
-                b.append(" ").append(measureToString.get(j)).append("\n");
-                for (Analyzer<?> a : analyzers[j]) {
+            Schema schema = run.schema;
+            for (int j = 0; j < schema.labels.length; j++) {
+                b.append(" ").append(schema.labels[j]).append("\n");
+                for (int k = schema.offsets[j]; k < schema.offsets[j + 1]; k++) {
+                    Analyzer<?> a = run.analyzers[k];
                     b.append("  ").append(a.getLabel()).append(": ").append(a.getValue()).append("\n");
                 }
             }
@@ -661,6 +1109,251 @@ public class Benchmark {
         return b.toString();
     }
 
+    /**
+     * Adds the given value to the analyzers of the given measure
+     * @param analyzers
+     * @param offsets
+     * @param measure
+     * @param value
+     */
+    static void addValue(Analyzer<?>[] analyzers, int[] offsets, int measure, double value) {
+        for (int i = offsets[measure], max = offsets[measure + 1]; i < max; i++) {
+            addValue(analyzers[i], value);
+        }
+    }
+
+    /**
+     * Adds the given value to the given analyzer
+     * @param analyzer
+     * @param value
+     */
+    @SuppressWarnings("unchecked")
+    private static void addValue(Analyzer<?> analyzer, double value) {
+        if (analyzer instanceof DoubleAnalyzer) {
+            ((DoubleAnalyzer)analyzer).add(value);
+        } else {
+            try {
+                ((Analyzer<Double>)analyzer).add(Double.valueOf(value));
+            } catch (ClassCastException e) {
+                throw new RuntimeException("Incompatible analyzer for value of type 'double'");
+            }
+        }
+    }
+
+    /**
+     * Adds the given value and back-fills the values of the operations that have been omitted
+     * while waiting for it to the analyzers of the given measure
+     * @see #addValueWithExpectedInterval(int, double, long)
+     * @param analyzers
+     * @param offsets
+     * @param measure
+     * @param value
+     * @param expectedInterval
+     */
+    static void addValueWithExpectedInterval(Analyzer<?>[] analyzers, int[] offsets, int measure, double value, long expectedInterval) {
+        if (expectedInterval <= 0) {
+            throw new IllegalArgumentException("Invalid expected interval: " + expectedInterval);
+        }
+        double step = (double) expectedInterval;
+        long missing = (long) Math.floor(value / step) - 1;
+        for (int i = offsets[measure], max = offsets[measure + 1]; i < max; i++) {
+            Analyzer<?> analyzer = analyzers[i];
+            addValue(analyzer, value);
+            if (missing <= 0) {
+                continue;
+            }
+            if (analyzer instanceof SequenceAnalyzer) {
+                ((SequenceAnalyzer)analyzer).add(value - step, step, missing);
+            } else {
+                for (long j = 1; j <= missing; j++) {
+                    addValue(analyzer, value - (double) j * step);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the given value with the given timestamp to the analyzers of the given measure
+     * @param analyzers
+     * @param offsets
+     * @param measure
+     * @param timestamp
+     * @param value
+     */
+    @SuppressWarnings("unchecked")
+    static void addTimedValue(Analyzer<?>[] analyzers, int[] offsets, int measure, long timestamp, double value) {
+        for (int i = offsets[measure], max = offsets[measure + 1]; i < max; i++) {
+            Analyzer<?> analyzer = analyzers[i];
+            if (analyzer instanceof TimedAnalyzer) {
+                ((TimedAnalyzer)analyzer).add(timestamp, value);
+            } else if (analyzer instanceof DoubleAnalyzer) {
+                ((DoubleAnalyzer)analyzer).add(value);
+            } else {
+                try {
+                    ((Analyzer<Double>)analyzer).add(Double.valueOf(value));
+                } catch (ClassCastException e) {
+                    throw new RuntimeException("Incompatible analyzer for value of type 'double'");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the analyzers of the current run
+     * @return
+     */
+    private Analyzer<?>[] getCurrentRun() {
+        Analyzer<?>[] analyzers = currentRun;
+        if (analyzers == null) {
+            throw new IllegalStateException("No run has been created");
+        }
+        return analyzers;
+    }
+
+    /**
+     * Returns the offsets of the analyzers of each measure in the current run
+     * @return
+     */
+    synchronized int[] getCurrentOffsets() {
+        if (current == null) {
+            throw new IllegalStateException("No run has been created");
+        }
+        return currentOffsets;
+    }
+
+    /**
+     * Creates new instances of the analyzers of the current run, which can be merged into the
+     * run via {@link #merge(Analyzer[])}
+     * @return
+     */
+    synchronized Analyzer<?>[] newInstances() {
+        if (current == null) {
+            throw new IllegalStateException("No run has been created");
+        }
+        return current.schema.newInstances();
+    }
+
+    /**
+     * Merges analyzers created by {@link #newInstances()} into the current run
+     * @param analyzers
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void merge(Analyzer<?>[] analyzers) {
+        if (current == null || analyzers.length != currentRun.length) {
+            throw new IllegalStateException("Analyzers do not belong to the current run");
+        }
+        for (int i = 0; i < analyzers.length; i++) {
+            ((Analyzer<Object>) currentRun[i]).merge((Analyzer<Object>) analyzers[i]);
+        }
+    }
+
+    /**
+     * Returns the calibration used for subtracting the overhead of clocks, null if disabled
+     * @return
+     */
+    Calibration getCalibration() {
+        return calibration;
+    }
+
+    /**
+     * Returns the instance of the measurement class that is to be used by the current thread
+     * @return
+     */
+    protected Measures getLocalMeasures() {
+        return measures;
+    }
+
+    /**
+     * Returns the number of measures
+     * @return
+     */
+    synchronized int getNumMeasures() {
+        return measureToString.size();
+    }
+
+    /**
+     * Subtracts the overhead of the given clock from the value, if enabled
+     * @param value
+     * @param clock
+     * @return
+     */
+    private long correct(long value, Clock clock) {
+        Calibration calibration = getCalibration();
+        return calibration == null ? value : Math.max(0L, value - calibration.getOverhead(clock));
+    }
+
+    /**
+     * Internal helper for building csv files. Extends the header with the columns of the given run.
+     * @param map
+     * @param header1
+     * @param header2
+     * @param run
+     */
+    private void createHeader(Map<String, Map<String, Integer>> map,
+                              List<String> header1,
+                              List<String> header2,
+                              Run run) {
+        
+        // Add columns
+        Schema schema = run.schema;
+        for (int j = 0; j < schema.labels.length; j++) {
+            String measure = schema.labels[j];
+            for (int k = schema.offsets[j]; k < schema.offsets[j + 1]; k++) {
+                String label = run.analyzers[k].getLabel();
+                int index = getIndex(map, measure, label);
+                if (index == -1) {
+                    setIndex(map, measure, label, header1.size());
+                    header1.add(measure);
+                    header2.add(label);
+                }
+            }
+        }
+    }
+
+    /**
+     * Internal helper for building csv files. Adds the columns of the run data to the empty header.
+     * @param header1
+     * @param header2
+     */
+    private void initHeader(List<String> header1, List<String> header2) {
+        for (int i = 0; i < runHeader.length; i++) {
+            header1.add("");
+            header2.add(runHeader[i]);
+        }
+    }
+
+    /**
+     * Internal helper for building csv files. Returns the line for the given run.
+     * @param map
+     * @param size
+     * @param run
+     * @return
+     */
+    private String[] createLine(Map<String, Map<String, Integer>> map, int size, Run run) {
+        String[] line = new String[size];
+        for (int j = 0; j < run.data.length; j++) {
+            line[j] = run.data[j];
+        }
+        Schema schema = run.schema;
+        for (int j = 0; j < schema.labels.length; j++) {
+            String measure = schema.labels[j];
+            for (int k = schema.offsets[j]; k < schema.offsets[j + 1]; k++) {
+                Analyzer<?> a = run.analyzers[k];
+                int index = getIndex(map, measure, a.getLabel());
+                if (index == -1) { throw new RuntimeException("Invalid index"); }
+                line[index] = a.getValue();
+            }
+            
+            // Copies of the values are not needed anymore
+            for (int k = schema.offsets[j]; k < schema.offsets[j + 1]; k++) {
+                if (run.analyzers[k] instanceof BufferedAnalyzer) {
+                    ((BufferedAnalyzer) run.analyzers[k]).release();
+                }
+            }
+        }
+        return line;
+    }
+
     /**
      * Internal helper for building csv files
      * @param map
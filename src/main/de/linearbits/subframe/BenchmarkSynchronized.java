@@ -20,10 +20,15 @@ package de.linearbits.subframe;
 import java.util.concurrent.atomic.AtomicLong;
 
 import de.linearbits.subframe.Measures.Visibility;
+import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.buffered.SampleBuffer;
 import de.linearbits.subframe.io.CSVFile;
+import de.linearbits.subframe.io.ResultSink;
 
 /**
- * A synchronized instance of the benchmark class. Uses spin locks.
+ * A synchronized instance of the benchmark class. Uses spin locks. Timers and baselines
+ * are stored separately for each thread.
+ * @see MeasuresThreadLocal
  * @author Fabian Prasser
  */
 public class BenchmarkSynchronized extends Benchmark {
@@ -64,6 +69,7 @@ public class BenchmarkSynchronized extends Benchmark {
         for (int i = 0; i < locks.length; i++) {
             locks[i] = new SpinLock();
         }
+        this.measures = new MeasuresThreadLocal(locks.length);
     }
 
     @Override
@@ -128,6 +134,11 @@ public class BenchmarkSynchronized extends Benchmark {
         locks[measure].release();
     }
 
+    @Override
+    public void addAnalyzer(int measure, Analyzer<?> analyzer) {
+        benchmark.addAnalyzer(measure, analyzer);
+    }
+
     @Override
     public int addMeasure(String label) {
         return benchmark.addMeasure(label);
@@ -138,6 +149,31 @@ public class BenchmarkSynchronized extends Benchmark {
         benchmark.addRun(data);
     }
 
+    @Override
+    public void closeResultSink() {
+        benchmark.closeResultSink();
+    }
+
+    @Override
+    public void finishRun() {
+        benchmark.finishRun();
+    }
+
+    @Override
+    public void setResultSink(ResultSink sink) {
+        benchmark.setResultSink(sink);
+    }
+
+    @Override
+    public void setOverheadCorrection(boolean enabled) {
+        benchmark.setOverheadCorrection(enabled);
+    }
+
+    @Override
+    public void setSampleBuffer(SampleBuffer template) {
+        benchmark.setSampleBuffer(template);
+    }
+
     @Override
     public void addSize(int measure, Object obj) {
         locks[measure].take();
@@ -153,23 +189,23 @@ public class BenchmarkSynchronized extends Benchmark {
     }
 
     @Override
-    public void addStopTimer(int measure) {
+    public void addUserTime(int measure) {
         locks[measure].take();
-        benchmark.addStopTimer(measure);
+        benchmark.addUserTime(measure);
         locks[measure].release();
     }
 
     @Override
-    public void addStopAndStartTimer(int measure) {
+    public void addTimedValue(int measure, long timestamp, double value) {
         locks[measure].take();
-        benchmark.addStopAndStartTimer(measure);
+        benchmark.addTimedValue(measure, timestamp, value);
         locks[measure].release();
     }
 
     @Override
-    public void addUserTime(int measure) {
+    public void addValueWithExpectedInterval(int measure, double value, long expectedInterval) {
         locks[measure].take();
-        benchmark.addUserTime(measure);
+        benchmark.addValueWithExpectedInterval(measure, value, expectedInterval);
         locks[measure].release();
     }
 
@@ -180,6 +216,13 @@ public class BenchmarkSynchronized extends Benchmark {
         locks[measure].release();
     }
 
+    @Override
+    public void addValue(int measure, Object value) {
+        locks[measure].take();
+        benchmark.addValue(measure, value);
+        locks[measure].release();
+    }
+
     @Override
     public boolean equals(Object obj) {
         return benchmark.equals(obj);
@@ -195,25 +238,33 @@ public class BenchmarkSynchronized extends Benchmark {
         return benchmark.getResults();
     }
 
+    @Override
+    public CSVFile getTimeSeries(int measure) {
+        return benchmark.getTimeSeries(measure);
+    }
+
     @Override
     public Benchmark getSynchronized() {
         return this;
     }
 
     @Override
-    public int hashCode() {
-        return benchmark.hashCode();
+    public Benchmark getThreadLocal() {
+        return benchmark.getThreadLocal();
     }
 
     @Override
-    public void startTimer(int measure) {
-        locks[measure].take();
-        benchmark.startTimer(measure);
-        locks[measure].release();
+    public int hashCode() {
+        return benchmark.hashCode();
     }
 
     @Override
     public String toString() {
         return benchmark.toString();
     }
+
+    @Override
+    Calibration getCalibration() {
+        return benchmark.getCalibration();
+    }
 }
@@ -0,0 +1,320 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2013 Fabian Prasser
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.SampleBuffer;
+import de.linearbits.subframe.io.CSVFile;
+import de.linearbits.subframe.io.ResultSink;
+
+/**
+ * A thread-safe instance of the benchmark class, in which each thread records values into
+ * its own shard without any locking. A shard consists of new instances of the analyzers of the
+ * current run, so that stream analyzers require constant memory per thread, and of an own instance
+ * of the measurement class, so that timers and baselines of different threads do not interfere.
+ * Values are analyzed when they are recorded, which means that timed analyzers receive the
+ * point in time at which a value has been recorded.<br>
+ * <br>
+ * The shards of all threads are merged into the current run of the underlying benchmark via
+ * {@link Analyzer#merge(Analyzer)} when a run is created or finished and when results are
+ * requested. All analyzers must therefore support merging. Shards of threads that have
+ * terminated are dropped after they have been merged. These methods must only be called while no
+ * other thread records values, e.g. after all worker threads have been joined. Measures must be
+ * added via this instance.<br>
+ * <br>
+ * A thread records into a new shard after its shard has been merged. Analyzers that depend on the
+ * order of values, such as the steady-state analyzer, treat each merged shard as a separate
+ * sequence. Their results are therefore only meaningful if shards are merged once per run, i.e.
+ * if results are not requested before the run is finished.
+ * 
+ * @author Fabian Prasser
+ */
+public class BenchmarkThreadLocal extends Benchmark {
+
+    /**
+     * The analyzers of a single thread
+     * @author Fabian Prasser
+     */
+    private static class Shard {
+
+        /** The thread that records into this shard */
+        private final WeakReference<Thread> thread;
+        /** The measures of this thread */
+        private final Measures              measures;
+        /** Instances of the analyzers of the current run, null if they have not been created yet */
+        private Analyzer<?>[]               analyzers;
+        /** Offsets of the analyzers of each measure */
+        private int[]                       offsets;
+
+        /**
+         * Creates a new shard for the current thread
+         * @param size
+         */
+        private Shard(int size) {
+            this.thread = new WeakReference<Thread>(Thread.currentThread());
+            this.measures = new Measures(size);
+        }
+
+        /**
+         * Adds a value
+         * @param benchmark
+         * @param measure
+         * @param value
+         */
+        private void add(Benchmark benchmark, int measure, double value) {
+            if (analyzers == null) {
+                create(benchmark);
+            }
+            Benchmark.addValue(analyzers, offsets, measure, value);
+        }
+
+        /**
+         * Adds a value with a timestamp
+         * @param benchmark
+         * @param measure
+         * @param timestamp
+         * @param value
+         */
+        private void add(Benchmark benchmark, int measure, long timestamp, double value) {
+            if (analyzers == null) {
+                create(benchmark);
+            }
+            Benchmark.addTimedValue(analyzers, offsets, measure, timestamp, value);
+        }
+
+        /**
+         * Adds a value corrected for coordinated omission
+         * @param benchmark
+         * @param measure
+         * @param value
+         * @param expectedInterval
+         */
+        private void add(Benchmark benchmark, int measure, double value, long expectedInterval) {
+            if (analyzers == null) {
+                create(benchmark);
+            }
+            Benchmark.addValueWithExpectedInterval(analyzers, offsets, measure, value, expectedInterval);
+        }
+
+        /**
+         * Creates instances of the analyzers of the current run
+         * @param benchmark
+         */
+        private void create(Benchmark benchmark) {
+            synchronized (benchmark) {
+                this.analyzers = benchmark.newInstances();
+                this.offsets = benchmark.getCurrentOffsets();
+            }
+        }
+
+        /**
+         * Merges all analyzers into the current run of the given benchmark and releases them
+         * @param benchmark
+         */
+        private void drain(Benchmark benchmark) {
+            if (analyzers == null) {
+                return;
+            }
+            benchmark.merge(analyzers);
+            for (Analyzer<?> analyzer : analyzers) {
+                if (analyzer instanceof BufferedAnalyzer) {
+                    ((BufferedAnalyzer) analyzer).clear();
+                }
+            }
+            analyzers = null;
+            offsets = null;
+        }
+
+        /**
+         * Returns whether the thread that records into this shard has terminated
+         * @return
+         */
+        private boolean isTerminated() {
+            Thread thread = this.thread.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+
+    /** The benchmark that calls are delegated to */
+    private final Benchmark          benchmark;
+    /** Number of measures */
+    private volatile int             size;
+    /** Shards of all threads */
+    private final List<Shard>        shards = new CopyOnWriteArrayList<Shard>();
+    /** Shard of the current thread */
+    private final ThreadLocal<Shard> shard  = new ThreadLocal<Shard>() {
+        @Override
+        protected Shard initialValue() {
+            Shard result = new Shard(size);
+            shards.add(result);
+            return result;
+        }
+    };
+
+    /**
+     * Creates a new instance
+     * @param benchmark
+     */
+    protected BenchmarkThreadLocal(Benchmark benchmark) {
+        this.benchmark = benchmark;
+        this.size = benchmark.getNumMeasures();
+    }
+
+    @Override
+    public void addAnalyzer(int measure, Analyzer<?> analyzer) {
+        benchmark.addAnalyzer(measure, analyzer);
+    }
+
+    @Override
+    public synchronized int addMeasure(String label) {
+        int measure = benchmark.addMeasure(label);
+        size = benchmark.getNumMeasures();
+        return measure;
+    }
+
+    @Override
+    public synchronized void addRun(String... data) {
+        merge();
+        benchmark.addRun(data);
+    }
+
+    @Override
+    public void addValue(int measure, double value) {
+        shard.get().add(benchmark, measure, value);
+    }
+
+    @Override
+    public void addTimedValue(int measure, long timestamp, double value) {
+        shard.get().add(benchmark, measure, timestamp, value);
+    }
+
+    @Override
+    public void addValueWithExpectedInterval(int measure, double value, long expectedInterval) {
+        shard.get().add(benchmark, measure, value, expectedInterval);
+    }
+
+    @Override
+    public synchronized void addValue(int measure, Object value) {
+        benchmark.addValue(measure, value);
+    }
+
+    @Override
+    public synchronized void closeResultSink() {
+        merge();
+        benchmark.closeResultSink();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return benchmark.equals(obj);
+    }
+
+    @Override
+    public synchronized void finishRun() {
+        merge();
+        benchmark.finishRun();
+    }
+
+    @Override
+    public String getMeasure(int measure) {
+        return benchmark.getMeasure(measure);
+    }
+
+    @Override
+    public Measures getMeasures() {
+        return getLocalMeasures();
+    }
+
+    @Override
+    public synchronized CSVFile getResults() {
+        merge();
+        return benchmark.getResults();
+    }
+
+    @Override
+    public synchronized CSVFile getTimeSeries(int measure) {
+        merge();
+        return benchmark.getTimeSeries(measure);
+    }
+
+    @Override
+    public Benchmark getSynchronized() {
+        return this;
+    }
+
+    @Override
+    public Benchmark getThreadLocal() {
+        return this;
+    }
+
+    @Override
+    public int hashCode() {
+        return benchmark.hashCode();
+    }
+
+    @Override
+    public void setResultSink(ResultSink sink) {
+        benchmark.setResultSink(sink);
+    }
+
+    @Override
+    public void setOverheadCorrection(boolean enabled) {
+        benchmark.setOverheadCorrection(enabled);
+    }
+
+    @Override
+    public void setSampleBuffer(SampleBuffer template) {
+        benchmark.setSampleBuffer(template);
+    }
+
+    @Override
+    public synchronized String toString() {
+        merge();
+        return benchmark.toString();
+    }
+
+    @Override
+    Calibration getCalibration() {
+        return benchmark.getCalibration();
+    }
+
+    @Override
+    protected Measures getLocalMeasures() {
+        Shard shard = this.shard.get();
+        shard.measures.grow(size);
+        return shard.measures;
+    }
+
+    /**
+     * Merges the analyzers of all threads into the current run of the underlying benchmark.
+     * Shards of terminated threads are dropped afterwards, as they will not receive any values.
+     */
+    private void merge() {
+        for (Shard shard : shards) {
+            shard.drain(benchmark);
+            if (shard.isTerminated()) {
+                shards.remove(shard);
+            }
+        }
+    }
+}
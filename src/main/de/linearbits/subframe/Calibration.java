@@ -0,0 +1,199 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2013 Fabian Prasser
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe;
+
+import java.util.Arrays;
+
+/**
+ * Calibration of the clocks used by the measurement class. For each clock, the overhead of reading
+ * it and its granularity are measured. The overhead is the value that an empty pair of start and
+ * stop calls records, i.e. the cost of a single read. The granularity is the smallest step by which
+ * the clock advances. Values below the granularity cannot be distinguished from zero. The
+ * granularity is zero if the clock did not advance during calibration.<br>
+ * <br>
+ * A shared instance is created when it is requested for the first time, which takes up to
+ * half a second, so it should be requested outside of measured regions.<br>
+ * <br>
+ * All reported times are in nanoseconds.
+ * 
+ * @author Fabian Prasser
+ */
+public class Calibration {
+
+    /**
+     * The clocks
+     * 
+     * @author Fabian Prasser
+     */
+    public static enum Clock {
+        /** Wall-clock time, see {@link System#nanoTime()} */
+        WALL_CLOCK,
+        /** CPU time of the current thread, see {@link Measures#getCurrentThreadCpuTime()} */
+        CURRENT_THREAD_CPU_TIME,
+        /** User time of the current thread, see {@link Measures#getCurrentThreadUserTime()} */
+        CURRENT_THREAD_USER_TIME,
+        /** System time of the current thread, see {@link Measures#getCurrentThreadSystemTime()} */
+        CURRENT_THREAD_SYSTEM_TIME
+    }
+
+    /** Number of empty measurements when measuring the overhead */
+    private static final int    SAMPLES     = 2000;
+    /** Number of rounds when measuring the granularity */
+    private static final int    ROUNDS      = 20;
+    /** Maximal time spent on measuring the granularity of a clock */
+    private static final long   MAX_WAIT    = 50000000L;
+
+    /** The shared instance */
+    private static Calibration  instance    = null;
+
+    /**
+     * Returns the shared instance, which is calibrated when this method is called for the first time
+     * @return
+     */
+    public static synchronized Calibration getInstance() {
+        if (instance == null) {
+            instance = new Calibration();
+        }
+        return instance;
+    }
+
+    /** Overhead of each clock */
+    private final long[]        overhead    = new long[Clock.values().length];
+    /** Granularity of each clock */
+    private final long[]        granularity = new long[Clock.values().length];
+
+    /**
+     * Creates a new instance and calibrates all clocks
+     */
+    public Calibration() {
+        Measures measures = new Measures(1);
+        for (Clock clock : Clock.values()) {
+            
+            // Warm up
+            getOverhead(measures, clock);
+            overhead[clock.ordinal()] = getOverhead(measures, clock);
+            granularity[clock.ordinal()] = getGranularity(measures, clock);
+        }
+    }
+
+    /**
+     * Returns the granularity of the given clock
+     * @param clock
+     * @return time in nanoseconds
+     */
+    public long getGranularity(Clock clock) {
+        return granularity[clock.ordinal()];
+    }
+
+    /**
+     * Returns the overhead of the given clock
+     * @param clock
+     * @return time in nanoseconds
+     */
+    public long getOverhead(Clock clock) {
+        return overhead[clock.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        b.append("Calibration\n");
+        for (Clock clock : Clock.values()) {
+            b.append(" ").append(clock).append(": overhead=").append(getOverhead(clock));
+            b.append(", granularity=").append(getGranularity(clock)).append("\n");
+        }
+        return b.toString();
+    }
+
+    /**
+     * Measures the granularity of the given clock as the smallest step by which it advances.
+     * Returns zero if the clock did not advance, e.g. because no system time is used while
+     * spinning.
+     * @param measures
+     * @param clock
+     * @return
+     */
+    private long getGranularity(Measures measures, Clock clock) {
+        long result = Long.MAX_VALUE;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS && System.nanoTime() - start < MAX_WAIT; i++) {
+            long first = read(measures, clock);
+            long next = first;
+            while (next == first && System.nanoTime() - start < MAX_WAIT) {
+                next = read(measures, clock);
+            }
+            if (next > first) {
+                result = Math.min(result, next - first);
+            }
+        }
+        return result == Long.MAX_VALUE ? 0L : result;
+    }
+
+    /**
+     * Measures the overhead of the given clock as the median of the values recorded by empty measurements
+     * @param measures
+     * @param clock
+     * @return
+     */
+    private long getOverhead(Measures measures, Clock clock) {
+        long[] values = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            switch (clock) {
+            case WALL_CLOCK:
+                measures.startTimer(0);
+                values[i] = measures.stopTimer(0);
+                break;
+            case CURRENT_THREAD_CPU_TIME:
+                measures.startCurrentThreadCpuTime(0);
+                values[i] = measures.stopCurrentThreadCpuTime(0);
+                break;
+            case CURRENT_THREAD_USER_TIME:
+                measures.startCurrentThreadUserTime(0);
+                values[i] = measures.stopCurrentThreadUserTime(0);
+                break;
+            case CURRENT_THREAD_SYSTEM_TIME:
+                measures.startCurrentThreadSystemTime(0);
+                values[i] = measures.stopCurrentThreadSystemTime(0);
+                break;
+            }
+        }
+        Arrays.sort(values);
+        return Math.max(0L, values[SAMPLES / 2]);
+    }
+
+    /**
+     * Returns the current value of the given clock
+     * @param measures
+     * @param clock
+     * @return
+     */
+    private long read(Measures measures, Clock clock) {
+        switch (clock) {
+        case WALL_CLOCK:
+            return System.nanoTime();
+        case CURRENT_THREAD_CPU_TIME:
+            return measures.getCurrentThreadCpuTime();
+        case CURRENT_THREAD_USER_TIME:
+            return measures.getCurrentThreadUserTime();
+        case CURRENT_THREAD_SYSTEM_TIME:
+            return measures.getCurrentThreadSystemTime();
+        default:
+            throw new IllegalArgumentException("Unknown clock: " + clock);
+        }
+    }
+}
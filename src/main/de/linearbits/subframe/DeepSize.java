@@ -0,0 +1,319 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2013 Fabian Prasser
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import de.linearbits.subframe.Measures.Visibility;
+
+/**
+ * Computes the deep memory usage of object graphs. Visited objects are tracked in an identity-based
+ * open-addressing hash set and pending objects are kept in an array-based stack, which are reset
+ * after each traversal. Reference fields and shallow sizes of classes are cached across traversals,
+ * so reflection is only used once per class. Instances are not thread-safe.
+ * 
+ * @author Fabian Prasser
+ */
+class DeepSize {
+
+    /**
+     * Cached information about a class
+     * 
+     * @author Fabian Prasser
+     */
+    private static class ClassInfo {
+
+        /** Non-static reference fields matching the filter */
+        private final Field[] fields;
+        /** Shallow size of instances, -1 if not known yet */
+        private long          size = -1;
+
+        /**
+         * Creates a new instance
+         * @param fields
+         */
+        private ClassInfo(Field[] fields) {
+            this.fields = fields;
+        }
+    }
+
+    /** Initial capacity of the set of visited objects */
+    private static final int                          INITIAL_CAPACITY = 1 << 10;
+
+    /** Instrumentation */
+    private final Instrumentation                     instrumentation;
+    /** Visibility filter */
+    private final Visibility                          filter;
+    /** Should array sizes be estimated in the current traversal */
+    private boolean                                   estimateArrays;
+    /** Cached information about classes */
+    private final IdentityHashMap<Class<?>, ClassInfo> classes          = new IdentityHashMap<Class<?>, ClassInfo>();
+    /** Visited objects */
+    private Object[]                                  visited          = new Object[INITIAL_CAPACITY];
+    /** Number of visited objects */
+    private int                                       numVisited       = 0;
+    /** Pending objects */
+    private Object[]                                  stack            = new Object[INITIAL_CAPACITY];
+    /** Number of pending objects */
+    private int                                       numStack         = 0;
+
+    /**
+     * Creates a new instance
+     * @param instrumentation
+     * @param filter
+     */
+    DeepSize(Instrumentation instrumentation, Visibility filter) {
+        this.instrumentation = instrumentation;
+        this.filter = filter;
+    }
+
+    /**
+     * Returns the deep memory usage of the given object
+     * @param object
+     * @param estimateArrays
+     * @return size in bytes
+     */
+    long getDeepSize(Object object, boolean estimateArrays) {
+
+        if (object == null) {
+            return 0L;
+        }
+        this.estimateArrays = estimateArrays;
+        try {
+            return traverse(object);
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * Returns the instrumentation
+     * @return
+     */
+    Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Returns the deep memory usage of the given object
+     * @param object
+     * @return size in bytes
+     */
+    private long traverse(Object object) {
+        long total = 0L;
+        push(object);
+        while (numStack > 0) {
+            final Object o = stack[--numStack];
+            stack[numStack] = null;
+            if (!visit(o)) {
+                continue;
+            }
+            final Class<?> clz = o.getClass();
+            if (clz.isArray()) {
+                total += instrumentation.getObjectSize(o);
+                if (!clz.getComponentType().isPrimitive()) {
+                    total += scan((Object[]) o);
+                }
+            } else {
+                ClassInfo info = getClassInfo(clz);
+                if (info.size == -1) {
+                    info.size = instrumentation.getObjectSize(o);
+                }
+                total += info.size;
+                for (Field field : info.fields) {
+                    try {
+                        final Object child = field.get(o);
+                        if (child != null) {
+                            push(child);
+                        }
+                    } catch (final IllegalAccessException e) {
+                        throw new InternalError("Couldn't read " + field);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns cached information about the given class
+     * @param clz
+     * @return
+     */
+    private ClassInfo getClassInfo(Class<?> clz) {
+        ClassInfo info = classes.get(clz);
+        if (info == null) {
+            List<Field> fields = new ArrayList<Field>();
+            for (Class<?> c = clz; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    final int mod = field.getModifiers();
+                    if (!Modifier.isStatic(mod) && matches(filter, mod) && !field.getType().isPrimitive()) {
+                        if (!field.isAccessible()) {
+                            field.setAccessible(true);
+                        }
+                        fields.add(field);
+                    }
+                }
+            }
+            info = new ClassInfo(fields.toArray(new Field[fields.size()]));
+            classes.put(clz, info);
+        }
+        return info;
+    }
+
+    /**
+     * Releases all references to objects of the last traversal. Tables that have grown are
+     * released as well, so that a single large graph does not slow down later traversals.
+     */
+    private void reset() {
+        if (visited.length > INITIAL_CAPACITY) {
+            visited = new Object[INITIAL_CAPACITY];
+        } else {
+            Arrays.fill(visited, null);
+        }
+        numVisited = 0;
+        if (stack.length > INITIAL_CAPACITY) {
+            stack = new Object[INITIAL_CAPACITY];
+        } else {
+            Arrays.fill(stack, 0, numStack, null);
+        }
+        numStack = 0;
+    }
+
+    /**
+     * Pushes an object onto the stack
+     * @param object
+     */
+    private void push(Object object) {
+        if (numStack == stack.length) {
+            Object[] array = new Object[stack.length * 2];
+            System.arraycopy(stack, 0, array, 0, numStack);
+            stack = array;
+        }
+        stack[numStack++] = object;
+    }
+
+    /**
+     * Pushes the elements of the array or, if sizes are estimated, returns the estimated size of its
+     * elements, assuming that all elements have the size of the first one
+     * @param array
+     * @return size in bytes
+     */
+    private long scan(Object[] array) {
+        if (estimateArrays) {
+            long size = -1;
+            long total = 0L;
+            for (Object element : array) {
+                if (element != null) {
+                    if (size == -1) {
+                        size = instrumentation.getObjectSize(element);
+                    }
+                    total += size;
+                }
+            }
+            return total;
+        } else {
+            for (Object element : array) {
+                if (element != null) {
+                    push(element);
+                }
+            }
+            return 0L;
+        }
+    }
+
+    /**
+     * Adds the object to the set of visited objects. Returns false if it has already been visited.
+     * @param object
+     * @return
+     */
+    private boolean visit(Object object) {
+        int mask = visited.length - 1;
+        int index = hash(object) & mask;
+        while (true) {
+            Object entry = visited[index];
+            if (entry == null) {
+                break;
+            } else if (entry == object) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        visited[index] = object;
+        if (++numVisited > (visited.length >>> 1)) {
+            rehash();
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the capacity of the set of visited objects
+     */
+    private void rehash() {
+        Object[] table = new Object[visited.length * 2];
+        int mask = table.length - 1;
+        for (Object object : visited) {
+            if (object != null) {
+                int index = hash(object) & mask;
+                while (table[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = object;
+            }
+        }
+        visited = table;
+    }
+
+    /**
+     * Spreads the identity hash code of the object
+     * @param object
+     * @return
+     */
+    private static int hash(Object object) {
+        int h = System.identityHashCode(object);
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Checks whether fields with the given modifier are followed according to the visibility filter
+     * @param filter
+     * @param modifier
+     * @return
+     */
+    static boolean matches(final Visibility filter, final int modifier) {
+        switch (filter) {
+        case ALL:
+            return true;
+        case NON_PUBLIC:
+            return !Modifier.isPublic(modifier);
+        case PRIVATE_ONLY:
+            return Modifier.isPrivate(modifier);
+        case NONE:
+            return false;
+        default:
+            throw new IllegalArgumentException("Illegal filter: " + filter);
+        }
+    }
+}
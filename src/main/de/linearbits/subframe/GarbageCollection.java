@@ -0,0 +1,295 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2013 Fabian Prasser
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Monitors the activity of the garbage collectors of the JVM. Counts and times are read from the
+ * GarbageCollectorMXBeans. Collectors are classified as young or old by their names, which covers
+ * the collectors shipped with HotSpot. Beans which only report the pauses of concurrent collectors,
+ * e.g. "ZGC Pauses" or "Shenandoah Pauses", contribute to the pause time but not to the number of
+ * collections, which is reported by the corresponding cycle beans. Bytes reclaimed and promoted
+ * are accumulated from GC notifications, if the JVM provides them. Notifications are delivered
+ * asynchronously, so a collection which finishes right before a value is read may not yet be
+ * included.<br>
+ * <br>
+ * The activity is global to the JVM and not specific to the current thread.<br>
+ * <br>
+ * All reported times are in nanoseconds, but the JVM only reports them with a resolution of
+ * milliseconds. All reported sizes are in bytes.
+ * 
+ * @author Fabian Prasser
+ */
+public class GarbageCollection {
+
+    /**
+     * The types of activity
+     * 
+     * @author Fabian Prasser
+     */
+    public static enum Activity {
+        /** Number of collections of the young generation */
+        YOUNG_COLLECTIONS,
+        /** Number of collections of the old generation */
+        OLD_COLLECTIONS,
+        /** Accumulated time spent in collections, excluding concurrent cycles, with millisecond resolution */
+        PAUSE_TIME,
+        /** Bytes freed on the heap */
+        RECLAIMED_BYTES,
+        /** Bytes moved into the old generation by young collections */
+        PROMOTED_BYTES
+    }
+
+    /** The shared instance */
+    private static GarbageCollection instance = null;
+
+    /**
+     * Returns the shared instance, which registers for GC notifications when this method is called
+     * for the first time
+     * @return
+     */
+    public static synchronized GarbageCollection getInstance() {
+        if (instance == null) {
+            instance = new GarbageCollection();
+        }
+        return instance;
+    }
+
+    /** Collectors of the young generation */
+    private final GarbageCollectorMXBean[] young;
+    /** Collectors of the old generation */
+    private final GarbageCollectorMXBean[] old;
+    /** Collectors whose times are pauses */
+    private final GarbageCollectorMXBean[] pausing;
+    /** Names of heap pools */
+    private final Set<String>              heapPools    = new HashSet<String>();
+    /** Names of old generation pools */
+    private final Set<String>              oldPools     = new HashSet<String>();
+    /** Bytes reclaimed */
+    private final AtomicLong               reclaimed    = new AtomicLong();
+    /** Bytes promoted */
+    private final AtomicLong               promoted     = new AtomicLong();
+    /** Whether notifications are available */
+    private final boolean                  notifications;
+
+    /**
+     * Creates a new instance
+     */
+    private GarbageCollection() {
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+                if (isOld(pool.getName())) {
+                    oldPools.add(pool.getName());
+                }
+            }
+        }
+
+        List<GarbageCollectorMXBean> young = new ArrayList<GarbageCollectorMXBean>();
+        List<GarbageCollectorMXBean> old = new ArrayList<GarbageCollectorMXBean>();
+        List<GarbageCollectorMXBean> pausing = new ArrayList<GarbageCollectorMXBean>();
+        boolean available = isNotificationInfoAvailable();
+        boolean notifications = false;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            final boolean isOld = isOld(bean.getName());
+            if (!isConcurrent(bean.getName())) {
+                pausing.add(bean);
+            }
+
+            // Pauses of concurrent collectors are neither counted nor analyzed twice
+            if (isPauses(bean.getName())) {
+                continue;
+            }
+            if (isOld) {
+                old.add(bean);
+            } else {
+                young.add(bean);
+            }
+            
+            // The listener resolves the notification info lazily, which is why it is only registered if available
+            if (available && bean instanceof NotificationEmitter) {
+                ((NotificationEmitter) bean).addNotificationListener(new NotificationListener() {
+                    @Override
+                    public void handleNotification(Notification notification, Object handback) {
+                        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                            collected(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()), isOld);
+                        }
+                    }
+                }, null, null);
+                notifications = true;
+            }
+        }
+        this.young = young.toArray(new GarbageCollectorMXBean[young.size()]);
+        this.old = old.toArray(new GarbageCollectorMXBean[old.size()]);
+        this.pausing = pausing.toArray(new GarbageCollectorMXBean[pausing.size()]);
+        this.notifications = notifications;
+    }
+
+    /**
+     * Returns the current value of the given activity, accumulated since the start of the JVM or,
+     * for bytes, since this instance has been created
+     * @param activity
+     * @return
+     */
+    public long get(Activity activity) {
+        switch (activity) {
+        case YOUNG_COLLECTIONS:
+            return getCount(young);
+        case OLD_COLLECTIONS:
+            return getCount(old);
+        case PAUSE_TIME:
+            return getTime(pausing) * 1000000L;
+        case RECLAIMED_BYTES:
+            return reclaimed.get();
+        case PROMOTED_BYTES:
+            return promoted.get();
+        default:
+            throw new IllegalArgumentException("Unknown activity: " + activity);
+        }
+    }
+
+    /**
+     * Returns whether bytes reclaimed and promoted are reported
+     * @return
+     */
+    public boolean isNotificationSupported() {
+        return notifications;
+    }
+
+    /**
+     * Accumulates the bytes reclaimed and promoted by a collection
+     * @param info
+     * @param isOld
+     */
+    private void collected(GarbageCollectionNotificationInfo info, boolean isOld) {
+        Map<String, MemoryUsage> before = info.getGcInfo().getMemoryUsageBeforeGc();
+        Map<String, MemoryUsage> after = info.getGcInfo().getMemoryUsageAfterGc();
+        long usedBefore = 0;
+        long usedAfter = 0;
+        long oldBefore = 0;
+        long oldAfter = 0;
+        for (String pool : heapPools) {
+            MemoryUsage usageBefore = before.get(pool);
+            MemoryUsage usageAfter = after.get(pool);
+            if (usageBefore == null || usageAfter == null) {
+                continue;
+            }
+            usedBefore += usageBefore.getUsed();
+            usedAfter += usageAfter.getUsed();
+            if (oldPools.contains(pool)) {
+                oldBefore += usageBefore.getUsed();
+                oldAfter += usageAfter.getUsed();
+            }
+        }
+        reclaimed.addAndGet(Math.max(0L, usedBefore - usedAfter));
+        if (!isOld) {
+            promoted.addAndGet(Math.max(0L, oldAfter - oldBefore));
+        }
+    }
+
+    /**
+     * Returns whether the JVM provides information about GC notifications
+     * @return
+     */
+    private static boolean isNotificationInfoAvailable() {
+        try {
+            Class.forName("com.sun.management.GarbageCollectionNotificationInfo");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of collections
+     * @param beans
+     * @return
+     */
+    private long getCount(GarbageCollectorMXBean[] beans) {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : beans) {
+            count += Math.max(0L, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time spent in collections in milliseconds
+     * @param beans
+     * @return
+     */
+    private long getTime(GarbageCollectorMXBean[] beans) {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : beans) {
+            time += Math.max(0L, bean.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * Returns whether the collector runs concurrently to the application
+     * @param name
+     * @return
+     */
+    private boolean isConcurrent(String name) {
+        return name.endsWith("Cycles") || name.endsWith("Concurrent GC");
+    }
+
+    /**
+     * Returns whether the collector only reports the pauses of a concurrent collector
+     * @param name
+     * @return
+     */
+    private boolean isPauses(String name) {
+        return name.endsWith("Pauses");
+    }
+
+    /**
+     * Returns whether the collector or pool belongs to the old generation
+     * @param name
+     * @return
+     */
+    private boolean isOld(String name) {
+        if (name.contains("Minor")) {
+            return false;
+        }
+        return name.contains("Old") || name.contains("Tenured") || name.contains("MarkSweep") ||
+               name.contains("Major") || name.endsWith("Cycles") || name.endsWith("Concurrent GC");
+    }
+}
@@ -18,12 +18,15 @@
 package de.linearbits.subframe;
 
 import java.lang.instrument.Instrumentation;
+import java.lang.ref.WeakReference;
+import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
 import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.ThreadMXBean;
-import java.lang.reflect.Field;
-import java.util.HashSet;
-import java.util.Stack;
+import java.util.Arrays;
+
+import de.linearbits.subframe.GarbageCollection.Activity;
 
 /**
  * This class provides access to a number of methods for measuring execution times,
@@ -42,12 +45,38 @@ public class Measures {
      * @author Prasser, Kohlmayer
      */
     public static enum Visibility {
+        /** Follow all references */
         ALL,
+        /** Follow references of fields that are not public */
         NON_PUBLIC,
+        /** Follow no references */
         NONE,
+        /** Follow references of private fields */
         PRIVATE_ONLY
     }
 
+    /** Default timeout for heavy GCs in milliseconds */
+    private static final long GC_TIMEOUT = 2000L;
+    /** Bytes which a GC may reclaim while the heap is still considered as settled */
+    private static final long GC_TOLERANCE = 16 * 1024L;
+
+    /** Cached MX bean for threads */
+    private static final ThreadMXBean                    THREAD_BEAN             = ManagementFactory.getThreadMXBean();
+    /** Cached MX bean for threads with bulk operations, null if not available */
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN_SUN         = THREAD_BEAN instanceof com.sun.management.ThreadMXBean ?
+                                                                                   (com.sun.management.ThreadMXBean) THREAD_BEAN : null;
+    /** Cached MX bean for memory */
+    private static final MemoryMXBean                    MEMORY_BEAN             = ManagementFactory.getMemoryMXBean();
+    /** Cached MX beans for garbage collectors */
+    private static final GarbageCollectorMXBean[]        GC_BEANS                = ManagementFactory.getGarbageCollectorMXBeans()
+                                                                                                    .toArray(new GarbageCollectorMXBean[0]);
+    /** Cached MX bean for the operating system */
+    private static final OperatingSystemMXBean           OS_BEAN                 = ManagementFactory.getOperatingSystemMXBean();
+    /** Whether the CPU time of all threads can be measured */
+    private static final boolean                         THREAD_CPU_TIME         = THREAD_BEAN.isThreadCpuTimeSupported();
+    /** Whether the CPU time of the current thread can be measured */
+    private static final boolean                         CURRENT_THREAD_CPU_TIME = THREAD_BEAN.isCurrentThreadCpuTimeSupported();
+
     /** Instrumentation, if any */
     private static Instrumentation instrumentation = null;
 
@@ -76,7 +105,13 @@ public class Measures {
     protected long[] bytesGCMX;
     /** Values for different measures */
     protected long[] bytesMX;
-    
+    /** Values for different measures */
+    protected long[] bytesAllocated;
+    /** Values for different measures */
+    protected long[] gcActivity;
+    /** Engines for deep sizes, one per visibility filter, created on demand */
+    private final DeepSize[] deepSizes = new DeepSize[Visibility.values().length];
+
 
     /**
      * Construct a new instance
@@ -88,7 +123,29 @@ public class Measures {
         threadSystemTime = new long[size];
         threadUserTime = new long[size];
         bytesGC = new long[size];
+        bytesGCMX = new long[size];
         bytesMX = new long[size];
+        bytesAllocated = new long[size];
+        gcActivity = new long[size];
+    }
+
+    /**
+     * Grows the arrays to the given number of measures. Baselines of existing measures are kept.
+     * @param size
+     */
+    void grow(int size) {
+        if (time.length >= size) {
+            return;
+        }
+        time = Arrays.copyOf(time, size);
+        threadCpuTime = Arrays.copyOf(threadCpuTime, size);
+        threadSystemTime = Arrays.copyOf(threadSystemTime, size);
+        threadUserTime = Arrays.copyOf(threadUserTime, size);
+        bytesGC = Arrays.copyOf(bytesGC, size);
+        bytesGCMX = Arrays.copyOf(bytesGCMX, size);
+        bytesMX = Arrays.copyOf(bytesMX, size);
+        bytesAllocated = Arrays.copyOf(bytesAllocated, size);
+        gcActivity = Arrays.copyOf(gcActivity, size);
     }
 
     /** 
@@ -97,7 +154,7 @@ public class Measures {
      * @return time in nanoseconds
      */
     public long getCpuTime() {
-        return getCpuTime(ManagementFactory.getThreadMXBean().getAllThreadIds());
+        return getCpuTime(THREAD_BEAN.getAllThreadIds());
     }
 
     /** 
@@ -105,8 +162,7 @@ public class Measures {
      * @return time in nanoseconds 
      */
     public long getCurrentThreadCpuTime() {
-        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
-        return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : 0L;
+        return CURRENT_THREAD_CPU_TIME ? THREAD_BEAN.getCurrentThreadCpuTime() : 0L;
     }
 
     /** 
@@ -114,8 +170,7 @@ public class Measures {
      * @return time in nanoseconds 
      */
     public long getCurrentThreadSystemTime() {
-        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
-        return bean.isCurrentThreadCpuTimeSupported() ? (bean.getCurrentThreadCpuTime() - bean.getCurrentThreadUserTime())
+        return CURRENT_THREAD_CPU_TIME ? (THREAD_BEAN.getCurrentThreadCpuTime() - THREAD_BEAN.getCurrentThreadUserTime())
                 : 0L;
     }
 
@@ -124,8 +179,44 @@ public class Measures {
      * @return time in nanoseconds 
      */
     public long getCurrentThreadUserTime() {
-        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
-        return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadUserTime() : 0L;
+        return CURRENT_THREAD_CPU_TIME ? THREAD_BEAN.getCurrentThreadUserTime() : 0L;
+    }
+
+    /** 
+     * Get the number of bytes allocated on the heap by the current thread. Does not trigger a GC.
+     * Returns 0 if the JVM does not support allocation tracking.
+     * @return size in bytes 
+     */
+    public long getCurrentThreadAllocatedBytes() {
+        if (THREAD_BEAN_SUN == null || !THREAD_BEAN_SUN.isThreadAllocatedMemorySupported() ||
+            !THREAD_BEAN_SUN.isThreadAllocatedMemoryEnabled()) {
+            return 0L;
+        }
+        return Math.max(0L, THREAD_BEAN_SUN.getThreadAllocatedBytes(Thread.currentThread().getId()));
+    }
+
+    /** 
+     * Stores a baseline for the bytes allocated by the current thread.
+     */
+    public void startAllocatedBytes(int measure) {
+        bytesAllocated[measure] = getCurrentThreadAllocatedBytes();
+    }
+
+    /** 
+     * Returns the given activity of the garbage collectors, which is global to the JVM.
+     * @see GarbageCollection
+     * @param activity
+     * @return count, time in nanoseconds or size in bytes
+     */
+    public long getGCActivity(Activity activity) {
+        return GarbageCollection.getInstance().get(activity);
+    }
+
+    /** 
+     * Stores a baseline for the given activity of the garbage collectors.
+     */
+    public void startGCActivity(int measure, Activity activity) {
+        gcActivity[measure] = getGCActivity(activity);
     }
 
     /** 
@@ -171,7 +262,16 @@ public class Measures {
     public long getDeepSize(final Object object, final Visibility filter, final boolean estimateArrays) {
 
         if (instrumentation == null) { throw new IllegalStateException("Use -javaagent:lib/JARFILE.jar to initialize agent"); }
-        return getDeepSize(new HashSet<Object>(), object, filter, estimateArrays);
+        
+        // Engines cache information about classes across calls
+        synchronized (deepSizes) {
+            DeepSize deepSize = deepSizes[filter.ordinal()];
+            if (deepSize == null || deepSize.getInstrumentation() != instrumentation) {
+                deepSize = new DeepSize(instrumentation, filter);
+                deepSizes[filter.ordinal()] = deepSize;
+            }
+            return deepSize.getDeepSize(object, estimateArrays);
+        }
     }
 
     /** 
@@ -180,8 +280,8 @@ public class Measures {
      */
     public long getUsedBytesGCMX() {
     	System.gc();
-        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() +
-               ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getUsed();
+        return MEMORY_BEAN.getHeapMemoryUsage().getUsed() +
+               MEMORY_BEAN.getNonHeapMemoryUsage().getUsed();
     }
     
     /** 
@@ -198,8 +298,8 @@ public class Measures {
      * @return size in bytes 
      */
     public long getUsedBytesMX() {
-        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() +
-               ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getUsed();
+        return MEMORY_BEAN.getHeapMemoryUsage().getUsed() +
+               MEMORY_BEAN.getNonHeapMemoryUsage().getUsed();
     }
     
     /** 
@@ -208,8 +308,8 @@ public class Measures {
      */
     public long getUsedBytesMXGC() {
         System.gc();
-        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() +
-               ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getUsed();
+        return MEMORY_BEAN.getHeapMemoryUsage().getUsed() +
+               MEMORY_BEAN.getNonHeapMemoryUsage().getUsed();
     }
 
     /** 
@@ -234,27 +334,59 @@ public class Measures {
     }
 
     /**
-     * Runs a "heavy" GC.
-     * http://lewisleo.blogspot.jp/2012/08/java-collections-performance.html
+     * Runs a "heavy" GC and waits until the heap has settled, for at most two seconds.
+     * @see #heavyGC(long)
      */
     public void heavyGC() {
+        heavyGC(GC_TIMEOUT);
+    }
+
+    /**
+     * Runs a "heavy" GC. Repeatedly requests a GC and finalization until a round does not reclaim
+     * any further memory. Each round waits until a collection has been counted by the MX beans
+     * and a weakly referenced sentinel has been cleared, so the heap is only inspected after the
+     * collection has actually happened. Returns when the heap has settled or the timeout has
+     * expired, which is typically a matter of milliseconds instead of seconds.
+     * http://lewisleo.blogspot.jp/2012/08/java-collections-performance.html
+     * 
+     * @param timeout in milliseconds
+     */
+    public void heavyGC(long timeout) {
+        long deadline = System.nanoTime() + timeout * 1000000L;
+        long previous = Long.MAX_VALUE;
         try {
-            System.gc();
-            Thread.sleep(200);
-            System.runFinalization();
-            Thread.sleep(200);
-            System.gc();
-            Thread.sleep(200);
-            System.runFinalization();
-            Thread.sleep(1000);
-            System.gc();
-            Thread.sleep(200);
-            System.runFinalization();
-            Thread.sleep(200);
-            System.gc();
+            while (true) {
+                long collections = getCollectionCount();
+                WeakReference<Object> sentinel = new WeakReference<Object>(new Object());
+                System.gc();
+                System.runFinalization();
+                while ((sentinel.get() != null ||
+                        getCollectionCount() == collections) &&
+                       System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                }
+                long used = MEMORY_BEAN.getHeapMemoryUsage().getUsed();
+                if (previous - used <= GC_TOLERANCE || System.nanoTime() >= deadline) {
+                    return;
+                }
+                previous = used;
+            }
         } catch (InterruptedException ex) {
-            ex.printStackTrace();
+            Thread.currentThread().interrupt();
+            return;
+        }
+    }
+
+    /**
+     * Returns the number of collections performed by all collectors, as reported by MX Management
+     * @return count
+     */
+    private long getCollectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : GC_BEANS) {
+            count += Math.max(0L, bean.getCollectionCount());
         }
+        return count;
     }
 
     /** 
@@ -262,9 +394,8 @@ public class Measures {
      * @return time in nanoseconds
      */
     public long getJVMCpuTime() {
-        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
-        if (!(bean instanceof com.sun.management.OperatingSystemMXBean)) return 0L;
-        return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime() * 1000000l;
+        if (!(OS_BEAN instanceof com.sun.management.OperatingSystemMXBean)) return 0L;
+        return ((com.sun.management.OperatingSystemMXBean) OS_BEAN).getProcessCpuTime() * 1000000l;
     }
 
     /**
@@ -284,7 +415,7 @@ public class Measures {
      * @return time in nanoseconds 
      */
     public long getSystemTime() {
-        return getSystemTime(ManagementFactory.getThreadMXBean().getAllThreadIds());
+        return getSystemTime(THREAD_BEAN.getAllThreadIds());
     }
 
     /** 
@@ -292,7 +423,7 @@ public class Measures {
      * @return time in nanoseconds 
      */
     public long getUserTime() {
-        return getUserTime(ManagementFactory.getThreadMXBean().getAllThreadIds());
+        return getUserTime(THREAD_BEAN.getAllThreadIds());
     }
 
     /**
@@ -348,6 +479,22 @@ public class Measures {
         return getCurrentThreadUserTime() - threadUserTime[measure];
     }
 
+    /** 
+     * Returns the bytes allocated by the current thread compared to baseline
+     * @return size in bytes
+     */
+    public long stopAllocatedBytes(int measure) {
+        return getCurrentThreadAllocatedBytes() - bytesAllocated[measure];
+    }
+
+    /** 
+     * Returns the given activity of the garbage collectors compared to baseline
+     * @return count, time in nanoseconds or size in bytes
+     */
+    public long stopGCActivity(int measure, Activity activity) {
+        return getGCActivity(activity) - gcActivity[measure];
+    }
+
     /** 
      * Returns the currently used memory as reported from MX Management after a GC compared to baseline
      * @return size in bytes
@@ -378,110 +525,34 @@ public class Measures {
      * @return time in nanoseconds 
      */
     private long getCpuTime(long[] ids) {
-        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
-        if (!bean.isThreadCpuTimeSupported()) return 0L;
+        if (!THREAD_CPU_TIME) return 0L;
+        if (THREAD_BEAN_SUN != null) return sum(THREAD_BEAN_SUN.getThreadCpuTime(ids));
         long time = 0L;
         for (long i : ids) {
-            long t = bean.getThreadCpuTime(i);
+            long t = THREAD_BEAN.getThreadCpuTime(i);
             if (t != -1) time += t;
         }
         return time;
     }
 
-    /**
-     * Deep memory usage of the given object.
-     * 
-     * @param instrumentation the instrumentation
-     * @param counted the counted
-     * @param obj the obj
-     * @param filter the filter
-     * @param estimateArraySize the estimate array size
-     * @return size in bytes
-     * @throws SecurityException the security exception
-     */
-    private long getDeepSize(final HashSet<Object> counted,
-                             final Object obj,
-                             final Visibility filter,
-                             final boolean estimateArraySize) throws SecurityException {
-        final Stack<Object> st = new Stack<Object>();
-        st.push(obj);
-        long total = 0L;
-        while (!st.isEmpty()) {
-            final Object o = st.pop();
-            if (counted.add(Integer.valueOf(System.identityHashCode(o)))) {
-
-                final long sz = instrumentation.getObjectSize(o);
-                total += sz;
-                Class<?> clz = o.getClass();
-                final Class<?> compType = clz.getComponentType();
-                if ((compType != null) && !compType.isPrimitive()) {
-                    final Object arr[] = (Object[]) o;
-                    final Object aobj[] = arr;
-                    int j = 0;
-                    if (estimateArraySize) {
-                        long sizeOfObject = -1;
-
-                        for (final int l = aobj.length; j < l; j++) {
-                            final Object el = aobj[j];
-                            if (el != null) {
-                                if (sizeOfObject == -1) {
-                                    sizeOfObject = instrumentation.getObjectSize(aobj[j]);
-                                }
-
-                                total += sizeOfObject;
-                            }
-                        }
-                    } else {
-                        for (final int l = aobj.length; j < l; j++) {
-                            final Object el = aobj[j];
-                            if (el != null) {
-                                st.push(el);
-                            }
-                        }
-                    }
-
-                }
-                for (; clz != null; clz = clz.getSuperclass()) {
-                    final Field afield[] = clz.getDeclaredFields();
-                    int i = 0;
-                    for (final int k = afield.length; i < k; i++) {
-                        final Field fld = afield[i];
-                        final int mod = fld.getModifiers();
-                        if (((mod & 8) == 0) && matches(filter, mod)) {
-                            final Class<?> fieldClass = fld.getType();
-                            if (!fieldClass.isPrimitive()) {
-                                if (!fld.isAccessible()) {
-                                    fld.setAccessible(true);
-                                }
-                                try {
-                                    final Object subObj = fld.get(o);
-                                    if (subObj != null) {
-                                        st.push(subObj);
-                                    }
-                                } catch (final IllegalAccessException illAcc) {
-                                    throw new InternalError((new StringBuilder("Couldn't read ")).append(fld)
-                                                                                                 .toString());
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return total;
-    }
-
     /** 
      * Get system time in nanoseconds.
      * @return time in nanoseconds 
      */
     private long getSystemTime(long[] ids) {
-        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
-        if (!bean.isThreadCpuTimeSupported()) return 0L;
+        if (!THREAD_CPU_TIME) return 0L;
         long time = 0L;
+        if (THREAD_BEAN_SUN != null) {
+            long[] cpu = THREAD_BEAN_SUN.getThreadCpuTime(ids);
+            long[] user = THREAD_BEAN_SUN.getThreadUserTime(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (cpu[i] != -1 && user[i] != -1) time += (cpu[i] - user[i]);
+            }
+            return time;
+        }
         for (long i : ids) {
-            long tc = bean.getThreadCpuTime(i);
-            long tu = bean.getThreadUserTime(i);
+            long tc = THREAD_BEAN.getThreadCpuTime(i);
+            long tu = THREAD_BEAN.getThreadUserTime(i);
             if (tc != -1 && tu != -1) time += (tc - tu);
         }
         return time;
@@ -492,35 +563,27 @@ public class Measures {
      * @return time in nanoseconds 
      */
     private long getUserTime(long[] ids) {
-        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
-        if (!bean.isThreadCpuTimeSupported()) return 0L;
+        if (!THREAD_CPU_TIME) return 0L;
+        if (THREAD_BEAN_SUN != null) return sum(THREAD_BEAN_SUN.getThreadUserTime(ids));
         long time = 0L;
         for (long i : ids) {
-            long t = bean.getThreadUserTime(i);
+            long t = THREAD_BEAN.getThreadUserTime(i);
             if (t != -1) time += t;
         }
         return time;
     }
 
     /**
-     * Checks if the modifier is matched by the visibility filter
-     * 
-     * @param filter 
-     * @param modifier
-     * @return true
-     */
-    private boolean matches(final Visibility filter, final int modifier) {
-        switch (filter.ordinal()) {
-        case 0:
-            return true;
-        case 3:
-            return false;
-        case 1:
-            return (modifier & 2) != 0;
-        case 2:
-            return (modifier & 1) == 0;
+     * Sums up the given times, skipping threads for which no time is available
+     * @param times
+     * @return time in nanoseconds
+     */
+    private long sum(long[] times) {
+        long time = 0L;
+        for (long t : times) {
+            if (t != -1) time += t;
         }
-        throw new IllegalArgumentException((new StringBuilder("Illegal filter ")).append(modifier).toString());
+        return time;
     }
 
     /**
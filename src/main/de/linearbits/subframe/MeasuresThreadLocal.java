@@ -0,0 +1,142 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2013 Fabian Prasser
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe;
+
+import de.linearbits.subframe.GarbageCollection.Activity;
+
+/**
+ * An instance of the measurement class, which stores timers and baselines separately for each thread.
+ * Different threads can therefore start and stop the same measure concurrently without interfering
+ * with each other and without any locking.
+ * 
+ * @author Fabian Prasser
+ */
+public class MeasuresThreadLocal extends Measures {
+
+    /** The measures of each thread */
+    private final ThreadLocal<Measures> local;
+
+    /**
+     * Construct a new instance
+     * @param size
+     */
+    public MeasuresThreadLocal(final int size) {
+        super(size);
+        this.local = new ThreadLocal<Measures>() {
+            @Override
+            protected Measures initialValue() {
+                return new Measures(size);
+            }
+        };
+    }
+
+    @Override
+    public void startAllocatedBytes(int measure) {
+        local.get().startAllocatedBytes(measure);
+    }
+
+    @Override
+    public void startCurrentThreadCpuTime(int measure) {
+        local.get().startCurrentThreadCpuTime(measure);
+    }
+
+    @Override
+    public void startCurrentThreadSystemTime(int measure) {
+        local.get().startCurrentThreadSystemTime(measure);
+    }
+
+    @Override
+    public void startCurrentThreadUserTime(int measure) {
+        local.get().startCurrentThreadUserTime(measure);
+    }
+
+    @Override
+    public void startGCActivity(int measure, Activity activity) {
+        local.get().startGCActivity(measure, activity);
+    }
+
+    @Override
+    public void startTimer(int measure) {
+        local.get().startTimer(measure);
+    }
+
+    @Override
+    public void startUsedBytesGC(int measure) {
+        local.get().startUsedBytesGC(measure);
+    }
+
+    @Override
+    public void startUsedBytesGCMX(int measure) {
+        local.get().startUsedBytesGCMX(measure);
+    }
+
+    @Override
+    public void startUsedBytesMX(int measure) {
+        local.get().startUsedBytesMX(measure);
+    }
+
+    @Override
+    public long stopAndStartTimer(int measure) {
+        return local.get().stopAndStartTimer(measure);
+    }
+
+    @Override
+    public long stopAllocatedBytes(int measure) {
+        return local.get().stopAllocatedBytes(measure);
+    }
+
+    @Override
+    public long stopCurrentThreadCpuTime(int measure) {
+        return local.get().stopCurrentThreadCpuTime(measure);
+    }
+
+    @Override
+    public long stopCurrentThreadSystemTime(int measure) {
+        return local.get().stopCurrentThreadSystemTime(measure);
+    }
+
+    @Override
+    public long stopCurrentThreadUserTime(int measure) {
+        return local.get().stopCurrentThreadUserTime(measure);
+    }
+
+    @Override
+    public long stopGCActivity(int measure, Activity activity) {
+        return local.get().stopGCActivity(measure, activity);
+    }
+
+    @Override
+    public long stopTimer(int measure) {
+        return local.get().stopTimer(measure);
+    }
+
+    @Override
+    public long stopUsedBytesGC(int measure) {
+        return local.get().stopUsedBytesGC(measure);
+    }
+
+    @Override
+    public long stopUsedBytesGCMX(int measure) {
+        return local.get().stopUsedBytesGCMX(measure);
+    }
+
+    @Override
+    public long stopUsedBytesMX(int measure) {
+        return local.get().stopUsedBytesMX(measure);
+    }
+}
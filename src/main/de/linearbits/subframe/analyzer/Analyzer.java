@@ -43,6 +43,10 @@ public abstract class Analyzer<T> {
     /** Label for analyzed values */
     public static final String MEDIAN             = "Median";
     /** Label for analyzed values */
+    public static final String RATE               = "Rate";
+    /** Name of the granularity of a clock in labels */
+    public static final String GRANULARITY        = "granularity";
+    /** Label for analyzed values */
     public static final String PERCENTILE(double percentile) {
         return percentile + " - Percentile";
     }
@@ -54,6 +58,58 @@ public abstract class Analyzer<T> {
     public static final String STANDARD_DEVIATION_WITHOUT_OUTLIERS(int numOutliers) {
         return "Standard Deviation ("+numOutliers+")";
     }
+    /** Label for analyzed values */
+    public static final String ARITHMETIC_MEAN_WITHOUT_OUTLIERS(String method) {
+        return "Arithmetic Mean ("+method+")";
+    }
+    /** Label for analyzed values */
+    public static final String STANDARD_DEVIATION_WITHOUT_OUTLIERS(String method) {
+        return "Standard Deviation ("+method+")";
+    }
+    /** Label for analyzed values */
+    public static final String OUTLIERS(String method) {
+        return "Outliers ("+method+")";
+    }
+    /** Label for analyzed values */
+    public static final String WARMUP(String method) {
+        return "Warm-up ("+method+")";
+    }
+    /** Label for analyzed values */
+    public static final String ARITHMETIC_MEAN_STEADY_STATE(String method) {
+        return "Arithmetic Mean (Steady State, "+method+")";
+    }
+    /** Label for analyzed values */
+    public static final String STANDARD_DEVIATION_STEADY_STATE(String method) {
+        return "Standard Deviation (Steady State, "+method+")";
+    }
+    /** Label for analyzed values */
+    public static final String PEAK_RATE(double window) {
+        return "Peak Rate ("+window+" s)";
+    }
+    /** Label for analyzed values */
+    public static final String TROUGH_RATE(double window) {
+        return "Trough Rate ("+window+" s)";
+    }
+    /** Label for analyzed values */
+    public static final String TIME_SERIES(double interval) {
+        return "Time Series ("+interval+" s)";
+    }
+    /** Label for analyzed values */
+    public static final String COUNT_BELOW(double threshold) {
+        return "Count (< "+threshold+")";
+    }
+    /** Label for analyzed values */
+    public static final String COUNT_BELOW(String threshold) {
+        return "Count (< "+threshold+")";
+    }
+    /** Label for analyzed values */
+    public static final String CONFIDENCE_INTERVAL(String statistic, double confidence, boolean upper) {
+        return statistic + " (" + confidence + " - CI " + (upper ? "Upper" : "Lower") + ")";
+    }
+    /** Label for analyzed values */
+    public static final String BOOTSTRAP_CONFIDENCE_INTERVAL(String statistic, double confidence, boolean upper) {
+        return statistic + " (" + confidence + " - Bootstrap CI " + (upper ? "Upper" : "Lower") + ")";
+    }
     
     /** The label*/
     private String label;
@@ -85,10 +141,30 @@ public abstract class Analyzer<T> {
      * @return
      */
     public abstract String getValue();
+
+    /**
+     * Merges the values added to the given analyzer into this analyzer. The given
+     * analyzer must be of the same type and have the same label. The default
+     * implementation does not support merging.
+     * @param other
+     */
+    public void merge(Analyzer<T> other) {
+        throw new UnsupportedOperationException("Analyzer '" + label + "' does not support merging");
+    }
     
     /** 
      * Creates a new instance
      * @return
      */
     public abstract Analyzer<T> newInstance();
+
+    /**
+     * Checks whether the given analyzer can be merged into this analyzer
+     * @param other
+     */
+    protected void checkMerge(Analyzer<?> other) {
+        if (other.getClass() != this.getClass() || !other.getLabel().equals(this.getLabel())) {
+            throw new IllegalArgumentException("Incompatible analyzer: " + other.getLabel());
+        }
+    }
 }
@@ -0,0 +1,33 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer;
+
+/**
+ * Interface for analyzers that accept primitive double values. Adding values via this
+ * interface avoids boxing and thus does not allocate memory.
+ * 
+ * @author Fabian Prasser
+ */
+public interface DoubleAnalyzer {
+
+    /**
+     * Adds a value
+     * @param val
+     */
+    public void add(double val);
+}
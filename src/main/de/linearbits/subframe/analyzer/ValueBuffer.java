@@ -44,6 +44,15 @@ public class ValueBuffer extends Analyzer<Object>{
         return value.toString();
     }
 
+    @Override
+    public void merge(Analyzer<Object> other) {
+        checkMerge(other);
+        Object value = ((ValueBuffer) other).value;
+        if (value != null) {
+            this.value = value;
+        }
+    }
+
     @Override
     public Analyzer<Object> newInstance() {
         return new ValueBuffer();
@@ -18,19 +18,72 @@
 package de.linearbits.subframe.analyzer.buffered;
 
 import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.DoubleAnalyzer;
 
 /**
  * Base class for analyzers that buffer all values and compute the result afterwards
  * @author Fabian Prasser
  */
-public abstract class BufferedAnalyzer extends Analyzer<Double>{
+public abstract class BufferedAnalyzer extends Analyzer<Double> implements DoubleAnalyzer {
 
-	/** Current number of values*/
-    protected int count = 0;
-    /** Growth rate for the underlying array list*/
-    protected double growthRate = 0d;
-    /** Values*/
-    protected double[] values = null;
+    /**
+     * Lets the given analyzers share one buffer, which will be filled by the first analyzer.
+     * Values must be added to all analyzers as before, but they will only be stored once and
+     * sorted at most once. The analyzers must not contain any values and must be able to share
+     * a buffer with each other. The shared buffer has the largest initial size and growth rate of
+     * all analyzers.
+     * @see #canShare(BufferedAnalyzer)
+     * @param analyzers
+     */
+    public static void share(BufferedAnalyzer... analyzers) {
+        if (analyzers.length < 2) {
+            return;
+        }
+        int size = 0;
+        double growthRate = 0d;
+        for (BufferedAnalyzer analyzer : analyzers) {
+            if (!analyzers[0].canShare(analyzer)) {
+                throw new IllegalArgumentException("Analyzers with a fixed size can only share buffers with analyzers of the same size");
+            }
+            size = Math.max(size, analyzer.getCapacity());
+            growthRate = Math.max(growthRate, analyzer.getGrowthRate());
+        }
+        share(new SampleBufferArray(size, growthRate), analyzers);
+    }
+
+    /**
+     * Lets the given analyzers share the given buffer, which will be filled by the first analyzer.
+     * Can also be used with a single analyzer to store its values in a different kind of buffer.
+     * The buffer and the analyzers must not contain any values.
+     * @param buffer
+     * @param analyzers
+     */
+    public static void share(SampleBuffer buffer, BufferedAnalyzer... analyzers) {
+        if (buffer.size() != 0) {
+            throw new IllegalStateException("Only empty buffers can be shared");
+        }
+        for (BufferedAnalyzer analyzer : analyzers) {
+            if (analyzer.buffer.size() != 0) {
+                throw new IllegalStateException("Buffers can only be shared by empty analyzers");
+            }
+        }
+        for (BufferedAnalyzer analyzer : analyzers) {
+            analyzer.buffer = buffer;
+            analyzer.owner = false;
+        }
+        if (analyzers.length > 0) {
+            analyzers[0].owner = true;
+        }
+    }
+
+    /** Values, possibly shared with other analyzers*/
+    protected SampleBuffer buffer;
+    /** Does this analyzer add values to the buffer*/
+    private boolean        owner = true;
+    /** Initial size of the array list*/
+    private final int      size;
+    /** Growth rate of the array list*/
+    private final double   growthRate;
     
     /**
      * Constructs a default instance. Backed by an array list with size 10 and a 1.5 growth rate
@@ -46,8 +99,7 @@ public abstract class BufferedAnalyzer extends Analyzer<Double>{
      * @param size
      */
     protected BufferedAnalyzer(String label, int size){
-        super(label);
-        this.values = new double[size];
+        this(label, size, 0d);
     }
     
     /**
@@ -57,9 +109,7 @@ public abstract class BufferedAnalyzer extends Analyzer<Double>{
      * @param growthRate
      */
     protected BufferedAnalyzer(String label, int initialSize, double growthRate){
-        super(label);
-        this.growthRate = growthRate;
-        this.values = new double[initialSize];
+        this(label, initialSize, 0, growthRate);
     }
     
     /**
@@ -71,29 +121,82 @@ public abstract class BufferedAnalyzer extends Analyzer<Double>{
      */
     protected BufferedAnalyzer(String label, int size, int count, double growthRate){
         super(label);
-        this.values = new double[size];
-        this.count = count;
+        this.buffer = new SampleBufferArray(size, count, growthRate);
+        this.size = size;
         this.growthRate = growthRate;
     }
     
     @Override
     public void add(Double val) {
-        if (count == values.length) {
-            if (growthRate != 0) {
-                grow();
-            } else {
-                throw new RuntimeException("Maximum number of values exceeded: "+count);
-            }
+        add(val.doubleValue());
+    }
+
+    @Override
+    public void add(double val) {
+        if (owner) {
+            buffer.add(val);
         }
-        values[count++] = val;
     }
 
     /**
-     * Grows the array list
+     * Returns whether this analyzer can share a buffer with the given analyzer via
+     * {@link #share(BufferedAnalyzer...)}. This is the case if both buffers grow or if both
+     * buffers have the same fixed size, so that an analyzer with a fixed size still rejects
+     * values that exceed its size when it shares its buffer.
+     * @param other
+     * @return
      */
-    private void grow() {
-        double[] nValues = new double[(int)((double)values.length * growthRate)];
-        System.arraycopy(values, 0, nValues, 0, values.length);
-        this.values = nValues;
+    public boolean canShare(BufferedAnalyzer other) {
+        boolean fixed = getGrowthRate() == 0d;
+        if (fixed != (other.getGrowthRate() == 0d)) {
+            return false;
+        }
+        return !fixed || getCapacity() == other.getCapacity();
+    }
+
+    /**
+     * Removes all values from the buffer, which may release the underlying memory, e.g. by
+     * returning chunks to a pool. The analyzer can be used for a new series of values afterwards.
+     */
+    public void clear() {
+        if (owner) {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Releases memory that has been allocated for computing the value, e.g. a copy of values
+     * that are stored outside of the heap. The values are kept.
+     * @see SampleBuffer#release()
+     */
+    public void release() {
+        buffer.release();
+    }
+
+    /**
+     * Returns the capacity of the array list, which is used for new instances
+     * @return
+     */
+    protected int getCapacity() {
+        return buffer instanceof SampleBufferArray ? ((SampleBufferArray) buffer).getCapacity() : size;
+    }
+
+    /**
+     * Returns the growth rate of the array list, which is used for new instances
+     * @return
+     */
+    protected double getGrowthRate() {
+        return buffer instanceof SampleBufferArray ? ((SampleBufferArray) buffer).getGrowthRate() : growthRate;
+    }
+
+    /**
+     * Merges the values of the given analyzer by appending them to the buffer
+     */
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        if (owner) {
+            buffer.addAll(((BufferedAnalyzer) other).buffer);
+        }
     }
 }
@@ -62,16 +62,17 @@ public class BufferedArithmeticMeanAnalyzer extends BufferedAnalyzer{
     
     @Override
     public String getValue() {
+        int count = buffer.size();
         if (count==0) throw new RuntimeException("No values specified!");
         double result = 0d;
         for (int i=0; i<count; i++){
-            result += values[i];
+            result += buffer.get(i);
         }
         return String.valueOf(result / (double)count);
     }
 
     @Override
     public Analyzer<Double> newInstance() {
-        return new BufferedArithmeticMeanAnalyzer(super.getLabel(), super.values.length, 0, super.growthRate);
+        return new BufferedArithmeticMeanAnalyzer(super.getLabel(), getCapacity(), 0, getGrowthRate());
     }
 }
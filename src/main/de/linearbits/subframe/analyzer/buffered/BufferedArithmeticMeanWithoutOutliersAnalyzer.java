@@ -17,8 +17,6 @@
  */
 package de.linearbits.subframe.analyzer.buffered;
 
-import java.util.Arrays;
-
 import de.linearbits.subframe.analyzer.Analyzer;
 
 /**
@@ -70,10 +68,11 @@ public class BufferedArithmeticMeanWithoutOutliersAnalyzer extends BufferedAnaly
     
     @Override
     public String getValue() {
+        int count = buffer.size();
         if (count==0) throw new RuntimeException("No values specified");
         if (count<=numOutliers*2) throw new RuntimeException("Need to specify more than ("+numOutliers*2+") values");
         
-        Arrays.sort(values, 0, count);
+        double[] values = buffer.getPartitionedValues(numOutliers, count - numOutliers - 1);
         BufferedArithmeticMeanAnalyzer analyzer = new BufferedArithmeticMeanAnalyzer();
         for (int i=numOutliers; i<count-numOutliers; i++) {
            analyzer.add(values[i]);
@@ -83,6 +82,6 @@ public class BufferedArithmeticMeanWithoutOutliersAnalyzer extends BufferedAnaly
 
     @Override
     public Analyzer<Double> newInstance() {
-        return new BufferedArithmeticMeanWithoutOutliersAnalyzer(super.getLabel(), super.values.length, 0, super.growthRate, numOutliers);
+        return new BufferedArithmeticMeanWithoutOutliersAnalyzer(super.getLabel(), getCapacity(), 0, getGrowthRate(), numOutliers);
     }
 }
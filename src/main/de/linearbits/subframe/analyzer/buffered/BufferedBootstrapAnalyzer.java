@@ -0,0 +1,242 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.buffered;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedConfidenceIntervalAnalyzer.Statistic;
+
+/**
+ * A buffered analyzer that computes a bound of a percentile bootstrap confidence interval.
+ * Resamples are computed in parallel on a fork/join pool. Each resample uses its own SplitMix64
+ * random number generator, which is seeded with the index of the resample, so that results do not
+ * depend on the degree of parallelism. Add two analyzers to obtain both bounds of an interval.
+ * If they share a buffer, e.g. as analyzers of the same measure of a benchmark, the distribution of
+ * the resampled statistic is only computed once.
+ * @author Fabian Prasser
+ */
+public class BufferedBootstrapAnalyzer extends BufferedAnalyzer {
+
+    /**
+     * A task that computes a range of resamples
+     * 
+     * @author Fabian Prasser
+     */
+    private static class Resampling extends RecursiveAction {
+
+        /** SVUID */
+        private static final long serialVersionUID = -2460370327306911624L;
+
+        /** Values */
+        private final double[]    values;
+        /** Number of values */
+        private final int         count;
+        /** The statistic */
+        private final Statistic   statistic;
+        /** Results of all resamples */
+        private final double[]    results;
+        /** First resample */
+        private final int         from;
+        /** Resample after the last one */
+        private final int         to;
+        /** Number of resamples, below which the range is not split any further */
+        private final int         threshold;
+
+        /**
+         * Creates a new task
+         * @param values
+         * @param count
+         * @param statistic
+         * @param results
+         * @param from
+         * @param to
+         * @param threshold
+         */
+        private Resampling(double[] values, int count, Statistic statistic, double[] results, int from, int to, int threshold) {
+            this.values = values;
+            this.count = count;
+            this.statistic = statistic;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > threshold) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Resampling(values, count, statistic, results, from, mid, threshold),
+                          new Resampling(values, count, statistic, results, mid, to, threshold));
+                return;
+            }
+            double[] sample = statistic == Statistic.MEDIAN ? new double[count] : null;
+            for (int resample = from; resample < to; resample++) {
+                long state = mix(SEED + resample);
+                if (sample == null) {
+                    double sum = 0d;
+                    for (int i = 0; i < count; i++) {
+                        state += 0x9E3779B97F4A7C15L;
+                        sum += values[(int) (((mix(state) >>> 32) * count) >>> 32)];
+                    }
+                    results[resample] = sum / (double) count;
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        state += 0x9E3779B97F4A7C15L;
+                        sample[i] = values[(int) (((mix(state) >>> 32) * count) >>> 32)];
+                    }
+                    if (count % 2 == 1) {
+                        results[resample] = OrderStatistics.select(sample, count, count / 2);
+                    } else {
+                        OrderStatistics.select(sample, count, count / 2 - 1, count / 2);
+                        results[resample] = (sample[count / 2 - 1] + sample[count / 2]) / 2d;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the output of a SplitMix64 generator for the given state
+         * @param state
+         * @return
+         */
+        private static long mix(long state) {
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    /** Default number of resamples */
+    public static final int     DEFAULT_RESAMPLES = 1000;
+
+    /** Seed of the random number generators */
+    private static final long   SEED              = 0x5DEECE66DL;
+    /** The pool, created on demand */
+    private static ForkJoinPool pool              = null;
+
+    /**
+     * Returns the pool
+     * @return
+     */
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    /** The statistic*/
+    private final Statistic statistic;
+    /** The confidence level*/
+    private final double    confidence;
+    /** The number of resamples*/
+    private final int       resamples;
+    /** Compute the upper or lower bound*/
+    private final boolean   upper;
+
+    /**
+     * Constructs a default instance with 1000 resamples. Backed by an array list with size 10 and a 1.5 growth rate
+     * @param statistic
+     * @param confidence
+     * @param upper
+     */
+    public BufferedBootstrapAnalyzer(Statistic statistic, double confidence, boolean upper) {
+        this(statistic, confidence, DEFAULT_RESAMPLES, upper);
+    }
+
+    /**
+     * Constructs an instance with the given number of resamples. Backed by an array list with size 10 and a 1.5 growth rate
+     * @param statistic
+     * @param confidence
+     * @param resamples
+     * @param upper
+     */
+    public BufferedBootstrapAnalyzer(Statistic statistic, double confidence, int resamples, boolean upper) {
+        super(Analyzer.BOOTSTRAP_CONFIDENCE_INTERVAL(statistic.getLabel(), confidence, upper));
+        this.statistic = statistic;
+        this.confidence = confidence;
+        this.resamples = resamples;
+        this.upper = upper;
+        check();
+    }
+
+    /**
+     * Clone constructor
+     * @param label
+     * @param statistic
+     * @param confidence
+     * @param resamples
+     * @param upper
+     * @param size
+     * @param count
+     * @param growthRate
+     */
+    public BufferedBootstrapAnalyzer(String label, Statistic statistic, double confidence, int resamples, boolean upper, int size, int count, double growthRate) {
+        super(label, size, count, growthRate);
+        this.statistic = statistic;
+        this.confidence = confidence;
+        this.resamples = resamples;
+        this.upper = upper;
+        check();
+    }
+
+    @Override
+    public String getValue() {
+        int count = buffer.size();
+        if (count == 0) throw new RuntimeException("No values specified!");
+
+        // The distribution is shared by all analyzers of the buffer with the same statistic and resamples
+        String key = "Bootstrap " + statistic + " " + resamples;
+        double[] results = (double[]) buffer.getResult(key);
+        if (results == null) {
+            
+            // Compute resamples in parallel, in about two tasks per worker
+            results = new double[resamples];
+            ForkJoinPool pool = getPool();
+            int threshold = Math.max(1, resamples / (pool.getParallelism() * 2));
+            pool.invoke(new Resampling(buffer.getSortedValues(), count, statistic, results, 0, resamples, threshold));
+            Arrays.sort(results);
+            buffer.setResult(key, results);
+        }
+
+        // Percentile interval
+        double alpha = (1d - confidence) / 2d;
+        int rank = upper ? (int) Math.ceil((1d - alpha) * resamples) - 1 : (int) Math.floor(alpha * resamples);
+        return String.valueOf(results[Math.max(0, Math.min(resamples - 1, rank))]);
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new BufferedBootstrapAnalyzer(super.getLabel(), statistic, confidence, resamples, upper, getCapacity(), 0, getGrowthRate());
+    }
+
+    /**
+     * Checks the parameters
+     */
+    private void check() {
+        BufferedConfidenceIntervalAnalyzer.check(confidence);
+        if (resamples <= 0) {
+            throw new IllegalArgumentException("Invalid number of resamples: " + resamples);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.buffered;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+
+/**
+ * A buffered analyzer that computes a bound of a confidence interval. For the arithmetic mean,
+ * the interval is based on the Student-t distribution. For the median, the interval is formed by
+ * two order statistics, the ranks of which are derived from the normal approximation of the
+ * binomial distribution. Add two analyzers to obtain both bounds of an interval.
+ * @author Fabian Prasser
+ */
+public class BufferedConfidenceIntervalAnalyzer extends BufferedAnalyzer {
+
+    /**
+     * The statistic for which the confidence interval is computed
+     * 
+     * @author Fabian Prasser
+     */
+    public static enum Statistic {
+        /** The arithmetic mean */
+        ARITHMETIC_MEAN(Analyzer.ARITHMETIC_MEAN),
+        /** The median */
+        MEDIAN(Analyzer.MEDIAN);
+
+        /** Label*/
+        private final String label;
+
+        /**
+         * Creates a new instance
+         * @param label
+         */
+        private Statistic(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Returns the label
+         * @return
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /** The statistic*/
+    private final Statistic statistic;
+    /** The confidence level*/
+    private final double    confidence;
+    /** Compute the upper or lower bound*/
+    private final boolean   upper;
+
+    /**
+     * Constructs a default instance. Backed by an array list with size 10 and a 1.5 growth rate
+     * @param statistic
+     * @param confidence
+     * @param upper
+     */
+    public BufferedConfidenceIntervalAnalyzer(Statistic statistic, double confidence, boolean upper) {
+        super(Analyzer.CONFIDENCE_INTERVAL(statistic.getLabel(), confidence, upper));
+        this.statistic = statistic;
+        this.confidence = confidence;
+        this.upper = upper;
+        check(confidence);
+    }
+
+    /**
+     * Clone constructor
+     * @param label
+     * @param statistic
+     * @param confidence
+     * @param upper
+     * @param size
+     * @param count
+     * @param growthRate
+     */
+    public BufferedConfidenceIntervalAnalyzer(String label, Statistic statistic, double confidence, boolean upper, int size, int count, double growthRate) {
+        super(label, size, count, growthRate);
+        this.statistic = statistic;
+        this.confidence = confidence;
+        this.upper = upper;
+        check(confidence);
+    }
+
+    @Override
+    public String getValue() {
+        int count = buffer.size();
+        if (count < 2) throw new RuntimeException("Need to specify more than (1) values");
+
+        double result = 0d;
+        switch (statistic) {
+        case ARITHMETIC_MEAN:
+            double mean = 0d;
+            for (int i = 0; i < count; i++) {
+                mean += buffer.get(i);
+            }
+            mean /= (double) count;
+            double dev = 0d;
+            for (int i = 0; i < count; i++) {
+                double delta = buffer.get(i) - mean;
+                dev += delta * delta;
+            }
+            double error = Math.sqrt(dev / (double) (count - 1)) / Math.sqrt(count);
+            double t = Distributions.studentTInverse((1d + confidence) / 2d, count - 1);
+            result = upper ? mean + t * error : mean - t * error;
+            break;
+        case MEDIAN:
+            double z = Distributions.normalInverse((1d + confidence) / 2d);
+            double width = z * Math.sqrt(count) / 2d;
+            int rank = upper ? (int) Math.ceil(count / 2d + width) : (int) Math.floor(count / 2d - width) - 1;
+            result = buffer.getValueAtRank(Math.max(0, Math.min(count - 1, rank)));
+            break;
+        }
+        return String.valueOf(result);
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new BufferedConfidenceIntervalAnalyzer(super.getLabel(), statistic, confidence, upper, getCapacity(), 0, getGrowthRate());
+    }
+
+    /**
+     * Checks the confidence level
+     * @param confidence
+     */
+    static void check(double confidence) {
+        if (confidence <= 0d || confidence >= 1d) {
+            throw new IllegalArgumentException("Invalid confidence level: " + confidence);
+        }
+    }
+}
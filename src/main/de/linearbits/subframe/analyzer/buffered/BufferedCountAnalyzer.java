@@ -62,12 +62,13 @@ public class BufferedCountAnalyzer extends BufferedAnalyzer{
     
     @Override
     public String getValue() {
+        int count = buffer.size();
         if (count==0) throw new RuntimeException("No values specified!");
         return String.valueOf(count);
     }
 
     @Override
     public Analyzer<Double> newInstance() {
-        return new BufferedCountAnalyzer(super.getLabel(), super.values.length, 0, super.growthRate);
+        return new BufferedCountAnalyzer(super.getLabel(), getCapacity(), 0, getGrowthRate());
     }
 }
@@ -62,16 +62,17 @@ public class BufferedGeometricMeanAnalyzer extends BufferedAnalyzer{
     
     @Override
     public String getValue() {
+        int count = buffer.size();
         if (count==0) throw new RuntimeException("No values specified!");
         double result = 1.0d;
         for (int i=0; i<count; i++) {
-            result *= Math.pow(values[i] + 1d, 1.0d / (double)count);
+            result *= Math.pow(buffer.get(i) + 1d, 1.0d / (double)count);
         }
         return String.valueOf(result - 1d);
     }
 
     @Override
     public Analyzer<Double> newInstance() {
-        return new BufferedGeometricMeanAnalyzer(super.getLabel(), super.values.length, 0, super.growthRate);
+        return new BufferedGeometricMeanAnalyzer(super.getLabel(), getCapacity(), 0, getGrowthRate());
     }
 }
@@ -62,16 +62,17 @@ public class BufferedMaxAnalyzer extends BufferedAnalyzer{
     
     @Override
     public String getValue() {
+        int count = buffer.size();
         if (count==0) throw new RuntimeException("No values specified!");
-        double result = Double.MIN_VALUE;
+        double result = -Double.MAX_VALUE;
         for (int i=0; i<count; i++){
-            result = Math.max(result, values[i]);
+            result = Math.max(result, buffer.get(i));
         }
         return String.valueOf(result);
     }
 
     @Override
     public Analyzer<Double> newInstance() {
-        return new BufferedMaxAnalyzer(super.getLabel(), super.values.length, 0, super.growthRate);
+        return new BufferedMaxAnalyzer(super.getLabel(), getCapacity(), 0, getGrowthRate());
     }
 }
@@ -17,8 +17,6 @@
  */
 package de.linearbits.subframe.analyzer.buffered;
 
-import java.util.Arrays;
-
 import de.linearbits.subframe.analyzer.Analyzer;
 
 /**
@@ -64,13 +62,14 @@ public class BufferedMedianAnalyzer extends BufferedAnalyzer {
     
     @Override
     public String getValue() {
+        int count = buffer.size();
         if (count == 0) throw new RuntimeException("No values specified!");
-        Arrays.sort(values, 0, count);
         double result = 0d;
         if (count % 2 == 1) {
-            result = values[(count + 1) / 2 - 1];
+            result = buffer.getValueAtRank((count + 1) / 2 - 1);
         }
         else {
+            double[] values = buffer.getPartitionedValues(count / 2 - 1, count / 2);
             double low = values[count / 2 - 1];
             double high = values[count / 2];
             result = (low + high) / 2.0;
@@ -81,6 +80,6 @@ public class BufferedMedianAnalyzer extends BufferedAnalyzer {
     
     @Override
     public Analyzer<Double> newInstance() {
-        return new BufferedMedianAnalyzer(super.getLabel(), super.values.length, 0, super.growthRate);
+        return new BufferedMedianAnalyzer(super.getLabel(), getCapacity(), 0, getGrowthRate());
     }
 }
@@ -62,16 +62,17 @@ public class BufferedMinAnalyzer extends BufferedAnalyzer{
     
     @Override
     public String getValue() {
+        int count = buffer.size();
         if (count==0) throw new RuntimeException("No values specified!");
         double result = Double.MAX_VALUE;
         for (int i=0; i<count; i++){
-            result = Math.min(result, values[i]);
+            result = Math.min(result, buffer.get(i));
         }
         return String.valueOf(result);
     }
 
     @Override
     public Analyzer<Double> newInstance() {
-        return new BufferedMinAnalyzer(super.getLabel(), super.values.length, 0, super.growthRate);
+        return new BufferedMinAnalyzer(super.getLabel(), getCapacity(), 0, getGrowthRate());
     }
 }
@@ -0,0 +1,242 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.buffered;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+
+/**
+ * A buffered analyzer that classifies outliers with robust statistics and reports either the
+ * number of outliers or the arithmetic mean or standard deviation of the remaining values.
+ * Outliers are values outside of fences that are derived either from the median absolute
+ * deviation (MAD) or from the interquartile range (IQR, Tukey's fences). Fences are computed
+ * with selection in linear time, the remaining statistics in a single pass.
+ * @author Fabian Prasser
+ */
+public class BufferedOutlierAnalyzer extends BufferedAnalyzer {
+
+    /**
+     * Method for classifying outliers
+     * 
+     * @author Fabian Prasser
+     */
+    public static enum Method {
+        /** Values further than <code>threshold</code> times the scaled MAD away from the median */
+        MAD(3.0d),
+        /** Values further than <code>threshold</code> times the IQR below the first or above the third quartile */
+        IQR(1.5d);
+
+        /** Default threshold*/
+        private final double threshold;
+
+        /**
+         * Creates a new instance
+         * @param threshold
+         */
+        private Method(double threshold) {
+            this.threshold = threshold;
+        }
+
+        /**
+         * Returns the default threshold
+         * @return
+         */
+        public double getDefaultThreshold() {
+            return threshold;
+        }
+    }
+
+    /**
+     * The value reported by the analyzer
+     * 
+     * @author Fabian Prasser
+     */
+    public static enum Result {
+        /** The number of outliers */
+        COUNT,
+        /** The arithmetic mean without outliers */
+        ARITHMETIC_MEAN,
+        /** The standard deviation without outliers */
+        STANDARD_DEVIATION
+    }
+
+    /** Scales the MAD to a consistent estimator of the standard deviation of a normal distribution*/
+    private static final double MAD_SCALE = 1.4826d;
+
+    /**
+     * Returns the label
+     * @param method
+     * @param threshold
+     * @param result
+     * @return
+     */
+    private static String getLabel(Method method, double threshold, Result result) {
+        String config = method + " " + threshold;
+        switch (result) {
+        case COUNT:
+            return Analyzer.OUTLIERS(config);
+        case ARITHMETIC_MEAN:
+            return Analyzer.ARITHMETIC_MEAN_WITHOUT_OUTLIERS(config);
+        default:
+            return Analyzer.STANDARD_DEVIATION_WITHOUT_OUTLIERS(config);
+        }
+    }
+
+    /** The method*/
+    private final Method method;
+    /** The threshold*/
+    private final double threshold;
+    /** The result*/
+    private final Result result;
+
+    /**
+     * Constructs a default instance with the default threshold of the method. Backed by an array list with size 10 and a 1.5 growth rate
+     * @param method
+     * @param result
+     */
+    public BufferedOutlierAnalyzer(Method method, Result result) {
+        this(method, method.getDefaultThreshold(), result);
+    }
+
+    /**
+     * Constructs a default instance with the given threshold. Backed by an array list with size 10 and a 1.5 growth rate
+     * @param method
+     * @param threshold
+     * @param result
+     */
+    public BufferedOutlierAnalyzer(Method method, double threshold, Result result) {
+        super(getLabel(method, threshold, result));
+        this.method = method;
+        this.threshold = threshold;
+        this.result = result;
+        check();
+    }
+
+    /**
+     * Clone constructor
+     * @param label
+     * @param method
+     * @param threshold
+     * @param result
+     * @param size
+     * @param count
+     * @param growthRate
+     */
+    public BufferedOutlierAnalyzer(String label, Method method, double threshold, Result result, int size, int count, double growthRate) {
+        super(label, size, count, growthRate);
+        this.method = method;
+        this.threshold = threshold;
+        this.result = result;
+        check();
+    }
+
+    @Override
+    public String getValue() {
+        int count = buffer.size();
+        if (count == 0) throw new RuntimeException("No values specified!");
+
+        // Fences
+        double low, high;
+        if (method == Method.MAD) {
+            double median = getMedian(buffer.getPartitionedValues(getMedianRanks(count)), count);
+            double[] deviations = new double[count];
+            for (int i = 0; i < count; i++) {
+                deviations[i] = Math.abs(buffer.get(i) - median);
+            }
+            OrderStatistics.select(deviations, count, getMedianRanks(count));
+            double mad = MAD_SCALE * getMedian(deviations, count);
+            low = median - threshold * mad;
+            high = median + threshold * mad;
+        } else {
+            int q1 = getRank(0.25d, count);
+            int q3 = getRank(0.75d, count);
+            double[] values = buffer.getPartitionedValues(q1, q3);
+            double iqr = values[q3] - values[q1];
+            low = values[q1] - threshold * iqr;
+            high = values[q3] + threshold * iqr;
+        }
+
+        // Single pass over remaining values
+        int outliers = 0;
+        int n = 0;
+        double mean = 0d;
+        double m2 = 0d;
+        for (int i = 0; i < count; i++) {
+            double value = buffer.get(i);
+            if (value < low || value > high) {
+                outliers++;
+            } else {
+                n++;
+                double delta = value - mean;
+                mean += delta / n;
+                m2 += delta * (value - mean);
+            }
+        }
+
+        switch (result) {
+        case COUNT:
+            return String.valueOf((double) outliers);
+        case ARITHMETIC_MEAN:
+            return String.valueOf(mean);
+        default:
+            return String.valueOf(n < 2 ? 0d : Math.sqrt(m2 / (double) (n - 1)));
+        }
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new BufferedOutlierAnalyzer(super.getLabel(), method, threshold, result, getCapacity(), 0, getGrowthRate());
+    }
+
+    /**
+     * Checks the parameters
+     */
+    private void check() {
+        if (threshold <= 0d) {
+            throw new IllegalArgumentException("Invalid threshold: " + threshold);
+        }
+    }
+
+    /**
+     * Returns the median of values that have been partitioned at the ranks returned by {@link #getMedianRanks(int)}
+     * @param values
+     * @param count
+     * @return
+     */
+    private double getMedian(double[] values, int count) {
+        return count % 2 == 1 ? values[count / 2] : (values[count / 2 - 1] + values[count / 2]) / 2d;
+    }
+
+    /**
+     * Returns the ranks needed for computing the median
+     * @param count
+     * @return
+     */
+    private int[] getMedianRanks(int count) {
+        return count % 2 == 1 ? new int[] { count / 2 } : new int[] { count / 2 - 1, count / 2 };
+    }
+
+    /**
+     * Returns the rank of the given percentile, as in {@link BufferedPercentileAnalyzer}
+     * @param percentile
+     * @param count
+     * @return
+     */
+    private int getRank(double percentile, int count) {
+        return Math.min((int) Math.ceil(percentile * (double) count), count - 1);
+    }
+}
@@ -17,8 +17,6 @@
  */
 package de.linearbits.subframe.analyzer.buffered;
 
-import java.util.Arrays;
-
 import de.linearbits.subframe.analyzer.Analyzer;
 
 /**
@@ -81,16 +79,16 @@ public class BufferedPercentileAnalyzer extends BufferedAnalyzer{
 
     @Override
     public String getValue() {
+        int count = buffer.size();
         if (count==0) throw new RuntimeException("No values specified!");
-        Arrays.sort(values, 0, count);
         int offset = (int)Math.ceil(percentile * (double)count);
         if (offset>count-1) offset = count-1;
-        return String.valueOf(values[offset]);
+        return String.valueOf(buffer.getValueAtRank(offset));
     }
     
     @Override
     public Analyzer<Double> newInstance() {
-        return new BufferedPercentileAnalyzer(super.getLabel(), this.percentile, super.values.length, 0, super.growthRate);
+        return new BufferedPercentileAnalyzer(super.getLabel(), this.percentile, getCapacity(), 0, getGrowthRate());
     }
 
     private void check(){
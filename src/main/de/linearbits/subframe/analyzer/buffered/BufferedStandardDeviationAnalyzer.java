@@ -62,18 +62,19 @@ public class BufferedStandardDeviationAnalyzer extends BufferedAnalyzer{
     
     @Override
     public String getValue() {
+        int count = buffer.size();
         if (count==0) throw new RuntimeException("No values specified!");
         if (count==1) return String.valueOf(0d);
         
         double mean = 0d;
         for (int i=0; i<count; i++){
-            mean += values[i];
+            mean += buffer.get(i);
         }
         mean /= (double)count;
         
         double dev = 0;
         for (int i=0; i<count; i++){
-            dev += Math.pow(values[i] - mean, 2.0d);
+            dev += Math.pow(buffer.get(i) - mean, 2.0d);
         }
         
         return String.valueOf(Math.sqrt(dev / (double)(count-1)));
@@ -81,6 +82,6 @@ public class BufferedStandardDeviationAnalyzer extends BufferedAnalyzer{
 
     @Override
     public Analyzer<Double> newInstance() {
-        return new BufferedStandardDeviationAnalyzer(super.getLabel(), super.values.length, 0, super.growthRate);
+        return new BufferedStandardDeviationAnalyzer(super.getLabel(), getCapacity(), 0, getGrowthRate());
     }
 }
@@ -17,8 +17,6 @@
  */
 package de.linearbits.subframe.analyzer.buffered;
 
-import java.util.Arrays;
-
 import de.linearbits.subframe.analyzer.Analyzer;
 
 /**
@@ -70,11 +68,12 @@ public class BufferedStandardDeviationWithoutOutliersAnalyzer extends BufferedAn
     
     @Override
     public String getValue() {
+        int count = buffer.size();
         if (count==0) throw new RuntimeException("No values specified");
         if (count<=numOutliers*2) throw new RuntimeException("Need to specify more than ("+numOutliers*2+") values");
         if (count==1) return String.valueOf(0d);
         
-        Arrays.sort(values, 0, count);
+        double[] values = buffer.getPartitionedValues(numOutliers, count - numOutliers - 1);
         BufferedStandardDeviationAnalyzer analyzer = new BufferedStandardDeviationAnalyzer();
         for (int i=numOutliers; i<count-numOutliers; i++) {
            analyzer.add(values[i]);
@@ -84,6 +83,6 @@ public class BufferedStandardDeviationWithoutOutliersAnalyzer extends BufferedAn
 
     @Override
     public Analyzer<Double> newInstance() {
-        return new BufferedStandardDeviationWithoutOutliersAnalyzer(super.getLabel(), super.values.length, 0, super.growthRate, numOutliers);
+        return new BufferedStandardDeviationWithoutOutliersAnalyzer(super.getLabel(), getCapacity(), 0, getGrowthRate(), numOutliers);
     }
 }
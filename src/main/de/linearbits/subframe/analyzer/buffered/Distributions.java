@@ -0,0 +1,185 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.buffered;
+
+/**
+ * Quantiles of the normal and the Student-t distribution, which are needed for computing
+ * confidence intervals
+ * 
+ * @author Fabian Prasser
+ */
+class Distributions {
+
+    /** Coefficients of the Lanczos approximation of the gamma function */
+    private static final double[] LANCZOS  = { 76.18009172947146, -86.50532032941677, 24.01409824083091,
+                                              -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5 };
+    /** Coefficients of the rational approximation of the inverse normal distribution */
+    private static final double[] NORMAL_A = { -3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                                              1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00 };
+    /** Coefficients of the rational approximation of the inverse normal distribution */
+    private static final double[] NORMAL_B = { -5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                                              6.680131188771972e+01, -1.328068155288572e+01 };
+    /** Coefficients of the rational approximation of the inverse normal distribution */
+    private static final double[] NORMAL_C = { -7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                                              -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00 };
+    /** Coefficients of the rational approximation of the inverse normal distribution */
+    private static final double[] NORMAL_D = { 7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                                              3.754408661907416e+00 };
+
+    /**
+     * Returns the quantile of the standard normal distribution for the given probability
+     * @param p
+     * @return
+     */
+    static double normalInverse(double p) {
+        if (p <= 0d || p >= 1d) {
+            throw new IllegalArgumentException("Invalid probability: " + p);
+        }
+        double[] a = NORMAL_A, b = NORMAL_B, c = NORMAL_C, d = NORMAL_D;
+        if (p < 0.02425d || p > 1d - 0.02425d) {
+            double q = Math.sqrt(-2d * Math.log(p < 0.5d ? p : 1d - p));
+            double x = (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5]) /
+                       ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1d);
+            return p < 0.5d ? x : -x;
+        }
+        double q = p - 0.5d;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q /
+               (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1d);
+    }
+
+    /**
+     * Returns the quantile of the Student-t distribution with the given degrees of freedom for the given probability
+     * @param p
+     * @param df
+     * @return
+     */
+    static double studentTInverse(double p, int df) {
+        if (p <= 0d || p >= 1d) {
+            throw new IllegalArgumentException("Invalid probability: " + p);
+        }
+        if (df <= 0) {
+            throw new IllegalArgumentException("Invalid degrees of freedom: " + df);
+        }
+        if (p < 0.5d) {
+            return -studentTInverse(1d - p, df);
+        }
+        
+        // Bisection on the distribution function
+        double low = 0d;
+        double high = 1d;
+        while (studentT(high, df) < p) {
+            low = high;
+            high *= 2d;
+        }
+        for (int i = 0; i < 200 && high - low > 1e-12d * high; i++) {
+            double mid = (low + high) / 2d;
+            if (studentT(mid, df) < p) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (low + high) / 2d;
+    }
+
+    /**
+     * Returns the continued fraction of the incomplete beta function
+     * @param a
+     * @param b
+     * @param x
+     * @return
+     */
+    private static double betaContinuedFraction(double a, double b, double x) {
+        double tiny = 1e-300d;
+        double qab = a + b;
+        double qap = a + 1d;
+        double qam = a - 1d;
+        double c = 1d;
+        double d = 1d - qab * x / qap;
+        if (Math.abs(d) < tiny) d = tiny;
+        d = 1d / d;
+        double h = d;
+        for (int m = 1; m <= 300; m++) {
+            int m2 = 2 * m;
+            double aa = m * (b - m) * x / ((qam + m2) * (a + m2));
+            d = 1d + aa * d;
+            if (Math.abs(d) < tiny) d = tiny;
+            c = 1d + aa / c;
+            if (Math.abs(c) < tiny) c = tiny;
+            d = 1d / d;
+            h *= d * c;
+            aa = -(a + m) * (qab + m) * x / ((a + m2) * (qap + m2));
+            d = 1d + aa * d;
+            if (Math.abs(d) < tiny) d = tiny;
+            c = 1d + aa / c;
+            if (Math.abs(c) < tiny) c = tiny;
+            d = 1d / d;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1d) < 1e-15d) {
+                break;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Returns the regularized incomplete beta function
+     * @param a
+     * @param b
+     * @param x
+     * @return
+     */
+    private static double betaRegularized(double a, double b, double x) {
+        if (x <= 0d) return 0d;
+        if (x >= 1d) return 1d;
+        double bt = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1d - x));
+        if (x < (a + 1d) / (a + b + 2d)) {
+            return bt * betaContinuedFraction(a, b, x) / a;
+        } else {
+            return 1d - bt * betaContinuedFraction(b, a, 1d - x) / b;
+        }
+    }
+
+    /**
+     * Returns the logarithm of the gamma function
+     * @param x
+     * @return
+     */
+    private static double logGamma(double x) {
+        double y = x;
+        double tmp = x + 5.5d;
+        tmp -= (x + 0.5d) * Math.log(tmp);
+        double series = 1.000000000190015d;
+        for (double coefficient : LANCZOS) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005d * series / x);
+    }
+
+    /**
+     * Returns the distribution function of the Student-t distribution for non-negative values
+     * @param t
+     * @param df
+     * @return
+     */
+    private static double studentT(double t, int df) {
+        return 1d - 0.5d * betaRegularized(df / 2d, 0.5d, df / (df + t * t));
+    }
+}
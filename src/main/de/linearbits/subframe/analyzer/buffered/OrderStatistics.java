@@ -0,0 +1,173 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.buffered;
+
+import java.util.Arrays;
+
+/**
+ * Selection of order statistics in linear expected time. Implements introselect: quickselect
+ * with median-of-three pivots and three-way partitioning, which falls back to sorting if the
+ * recursion becomes too deep. Several ranks can be selected at once. After selecting the rank
+ * <code>k</code>, the element at index <code>k</code> is the one that would be there if the
+ * range was sorted, all elements before it are less or equal and all elements after it are
+ * greater or equal.
+ * 
+ * @author Fabian Prasser
+ */
+public class OrderStatistics {
+
+    /** Ranges up to this size are sorted with insertion sort */
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    /**
+     * Selects the given rank in the first <code>count</code> elements of the array
+     * @param values
+     * @param count
+     * @param rank
+     * @return the value at the given rank
+     */
+    public static double select(double[] values, int count, int rank) {
+        if (rank < 0 || rank >= count) {
+            throw new IllegalArgumentException("Invalid rank: " + rank);
+        }
+        select(values, 0, count - 1, new int[] { rank }, 0, 0, getMaxDepth(count));
+        return values[rank];
+    }
+
+    /**
+     * Selects all given ranks in the first <code>count</code> elements of the array.
+     * Afterwards, the elements between two selected ranks are greater or equal to the element
+     * at the lower rank and less or equal to the element at the higher rank.
+     * @param values
+     * @param count
+     * @param ranks
+     */
+    public static void select(double[] values, int count, int... ranks) {
+        if (ranks.length == 0) {
+            return;
+        }
+        int[] sorted = ranks.clone();
+        Arrays.sort(sorted);
+        if (sorted[0] < 0 || sorted[sorted.length - 1] >= count) {
+            throw new IllegalArgumentException("Invalid rank: " + Arrays.toString(ranks));
+        }
+        select(values, 0, count - 1, sorted, 0, sorted.length - 1, getMaxDepth(count));
+    }
+
+    /**
+     * Returns the maximal recursion depth before falling back to sorting
+     * @param count
+     * @return
+     */
+    private static int getMaxDepth(int count) {
+        return 2 * (32 - Integer.numberOfLeadingZeros(Math.max(count, 1)));
+    }
+
+    /**
+     * Sorts the given range with insertion sort
+     * @param values
+     * @param from inclusive
+     * @param to inclusive
+     */
+    private static void insertionSort(double[] values, int from, int to) {
+        for (int i = from + 1; i <= to; i++) {
+            double value = values[i];
+            int j = i - 1;
+            while (j >= from && values[j] > value) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    /**
+     * Selects the ranks <code>ranks[rankFrom]</code> to <code>ranks[rankTo]</code>, which
+     * must be sorted, in the given range of the array
+     * @param values
+     * @param from inclusive
+     * @param to inclusive
+     * @param ranks
+     * @param rankFrom inclusive
+     * @param rankTo inclusive
+     * @param depth
+     */
+    private static void select(double[] values, int from, int to, int[] ranks, int rankFrom, int rankTo, int depth) {
+
+        while (rankFrom <= rankTo && from < to) {
+
+            // Small or degenerated ranges
+            if (to - from < INSERTION_SORT_THRESHOLD) {
+                insertionSort(values, from, to);
+                return;
+            }
+            if (depth-- == 0) {
+                Arrays.sort(values, from, to + 1);
+                return;
+            }
+
+            // Median of three
+            int mid = (from + to) >>> 1;
+            double a = values[from];
+            double b = values[mid];
+            double c = values[to];
+            double pivot = a < b ? (b < c ? b : (a < c ? c : a)) : (a < c ? a : (b < c ? c : b));
+
+            // Three-way partitioning: [from, lt) < pivot, [lt, gt] == pivot, (gt, to] > pivot
+            int lt = from;
+            int gt = to;
+            int i = from;
+            while (i <= gt) {
+                double value = values[i];
+                if (value < pivot) {
+                    values[i++] = values[lt];
+                    values[lt++] = value;
+                } else if (value > pivot) {
+                    values[i] = values[gt];
+                    values[gt--] = value;
+                } else {
+                    i++;
+                }
+            }
+
+            // Split ranks
+            int left = rankFrom;
+            while (left <= rankTo && ranks[left] < lt) {
+                left++;
+            }
+            int right = left;
+            while (right <= rankTo && ranks[right] <= gt) {
+                right++;
+            }
+
+            // Recurse into the left part and continue with the right part
+            if (left > rankFrom) {
+                select(values, from, lt - 1, ranks, rankFrom, left - 1, depth);
+            }
+            from = gt + 1;
+            rankFrom = right;
+        }
+    }
+
+    /**
+     * No instances
+     */
+    private OrderStatistics() {
+        // Empty by design
+    }
+}
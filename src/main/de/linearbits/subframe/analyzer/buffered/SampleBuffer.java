@@ -0,0 +1,195 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.buffered;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Base class for buffers that store the values of buffered analyzers. A buffer can be shared by
+ * several analyzers of the same measure, which then only store the values once. Order statistics
+ * are computed lazily, at most once for all analyzers that need the values in sorted order.<br>
+ * <br>
+ * The default implementation computes order statistics on a copy of the values on the heap,
+ * which is created when the first order statistic is requested and kept until the values are
+ * modified or {@link #release()} is called. Implementations that store the values in an array on
+ * the heap override these methods to work in place.
+ * 
+ * @author Fabian Prasser
+ */
+public abstract class SampleBuffer {
+
+    /** Copy of the values for computing order statistics, null if outdated*/
+    private double[]            copy    = null;
+    /** Is the copy sorted*/
+    private boolean             sorted  = false;
+    /** Results derived from the values, which are shared by analyzers, null if outdated*/
+    private Map<Object, Object> results = null;
+
+    /**
+     * Adds a value
+     * @param val
+     */
+    public abstract void add(double val);
+
+    /**
+     * Adds all values of the given buffer
+     * @param other
+     */
+    public void addAll(SampleBuffer other) {
+        int count = other.size();
+        for (int i = 0; i < count; i++) {
+            add(other.get(i));
+        }
+    }
+
+    /**
+     * Removes all values. Implementations may release the underlying memory.
+     */
+    public abstract void clear();
+
+    /**
+     * Returns the value at the given index. The order of values may change when
+     * order statistics are computed.
+     * @param index
+     * @return
+     */
+    public abstract double get(int index);
+
+    /**
+     * Returns the values, partitioned at the given ranks, which are stored in the first
+     * <code>size()</code> elements of the array. The element at each given rank is the one that
+     * would be there if the values were sorted and the elements between two given ranks lie between
+     * the respective values. Uses selection in linear time if the values are not sorted.
+     * The array must not be modified.
+     * @param ranks
+     * @return
+     */
+    public double[] getPartitionedValues(int... ranks) {
+        double[] values = getCopy();
+        if (!sorted) {
+            OrderStatistics.select(values, size(), ranks);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the values in ascending order, which are stored in the first <code>size()</code> elements
+     * of the array. Values are only sorted if they have been modified since the last call.
+     * The array must not be modified.
+     * @return
+     */
+    public double[] getSortedValues() {
+        double[] values = getCopy();
+        if (!sorted) {
+            Arrays.sort(values, 0, size());
+            sorted = true;
+        }
+        return values;
+    }
+
+    /**
+     * Returns the value with the given rank in ascending order, starting at zero. Uses selection
+     * in linear time if the values are not sorted.
+     * @param rank
+     * @return
+     */
+    public double getValueAtRank(int rank) {
+        double[] values = getCopy();
+        if (sorted) {
+            if (rank < 0 || rank >= size()) {
+                throw new IllegalArgumentException("Invalid rank: " + rank);
+            }
+            return values[rank];
+        }
+        return OrderStatistics.select(values, size(), rank);
+    }
+
+    /**
+     * Releases memory that has been allocated for computing order statistics, i.e. the copy of
+     * the values on the heap. Order statistics requested afterwards are computed from scratch.
+     * Should be called when all order statistics have been computed, e.g. for buffers that keep
+     * values outside of the heap.
+     */
+    public void release() {
+        copy = null;
+        sorted = false;
+        results = null;
+    }
+
+    /**
+     * Returns a new empty buffer with the same configuration
+     * @return
+     */
+    public abstract SampleBuffer newInstance();
+
+    /**
+     * Returns the number of values
+     * @return
+     */
+    public abstract int size();
+
+    /**
+     * Must be called by implementations when values are modified
+     */
+    protected void invalidate() {
+        copy = null;
+        sorted = false;
+        results = null;
+    }
+
+    /**
+     * Returns the result that has been derived from the current values with the given key, null if
+     * there is none. This allows analyzers that share the buffer to share expensive computations.
+     * @param key
+     * @return
+     */
+    Object getResult(Object key) {
+        return results == null ? null : results.get(key);
+    }
+
+    /**
+     * Stores a result that has been derived from the current values with the given key. Results
+     * are discarded when the values are modified or released.
+     * @param key
+     * @param result
+     */
+    void setResult(Object key, Object result) {
+        if (results == null) {
+            results = new HashMap<Object, Object>();
+        }
+        results.put(key, result);
+    }
+
+    /**
+     * Returns a copy of the values
+     * @return
+     */
+    private double[] getCopy() {
+        if (copy == null) {
+            int count = size();
+            copy = new double[count];
+            for (int i = 0; i < count; i++) {
+                copy[i] = get(i);
+            }
+            sorted = false;
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.buffered;
+
+import java.util.Arrays;
+
+/**
+ * A sample buffer backed by an array list on the heap. Order statistics are computed in place.
+ * 
+ * @author Fabian Prasser
+ */
+public class SampleBufferArray extends SampleBuffer {
+
+    /** Current number of values*/
+    private int      count      = 0;
+    /** Growth rate for the underlying array list*/
+    private double   growthRate = 0d;
+    /** Values*/
+    private double[] values     = null;
+    /** Are the values sorted*/
+    private boolean  sorted     = true;
+
+    /**
+     * Constructs a buffer backed by an array list with given initial size and given growth rate.
+     * A growth rate of zero means that the size is fixed.
+     * @param initialSize
+     * @param growthRate
+     */
+    public SampleBufferArray(int initialSize, double growthRate) {
+        this(initialSize, 0, growthRate);
+    }
+
+    /**
+     * Clone constructor
+     * @param size
+     * @param count
+     * @param growthRate
+     */
+    SampleBufferArray(int size, int count, double growthRate) {
+        this.values = new double[size];
+        this.count = count;
+        this.growthRate = growthRate;
+        this.sorted = count == 0;
+    }
+
+    @Override
+    public void add(double val) {
+        if (count == values.length) {
+            if (growthRate != 0) {
+                grow(count + 1);
+            } else {
+                throw new RuntimeException("Maximum number of values exceeded: "+count);
+            }
+        }
+        values[count++] = val;
+        sorted = false;
+        invalidate();
+    }
+
+    @Override
+    public void addAll(SampleBuffer other) {
+        if (!(other instanceof SampleBufferArray)) {
+            super.addAll(other);
+            return;
+        }
+        SampleBufferArray array = (SampleBufferArray) other;
+        if (array.count == 0) {
+            return;
+        }
+        if (count + array.count > values.length) {
+            if (growthRate != 0) {
+                grow(count + array.count);
+            } else {
+                throw new RuntimeException("Maximum number of values exceeded: "+(count + array.count));
+            }
+        }
+        System.arraycopy(array.values, 0, values, count, array.count);
+        count += array.count;
+        sorted = false;
+        invalidate();
+    }
+
+    @Override
+    public void clear() {
+        count = 0;
+        sorted = true;
+        invalidate();
+    }
+
+    @Override
+    public double get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the current capacity
+     * @return
+     */
+    public int getCapacity() {
+        return values.length;
+    }
+
+    /**
+     * Returns the growth rate
+     * @return
+     */
+    public double getGrowthRate() {
+        return growthRate;
+    }
+
+    @Override
+    public double[] getPartitionedValues(int... ranks) {
+        if (!sorted) {
+            OrderStatistics.select(values, count, ranks);
+        }
+        return values;
+    }
+
+    @Override
+    public double[] getSortedValues() {
+        if (!sorted) {
+            Arrays.sort(values, 0, count);
+            sorted = true;
+        }
+        return values;
+    }
+
+    @Override
+    public double getValueAtRank(int rank) {
+        if (sorted) {
+            if (rank < 0 || rank >= count) {
+                throw new IllegalArgumentException("Invalid rank: " + rank);
+            }
+            return values[rank];
+        }
+        return OrderStatistics.select(values, count, rank);
+    }
+
+    @Override
+    public SampleBuffer newInstance() {
+        return new SampleBufferArray(values.length, growthRate);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Grows the array list to at least the given size
+     * @param size
+     */
+    private void grow(int size) {
+        int length = values.length;
+        while (length < size) {
+            length = Math.max((int)((double)length * growthRate), length + 1);
+        }
+        double[] nValues = new double[length];
+        System.arraycopy(values, 0, nValues, 0, count);
+        this.values = nValues;
+    }
+}
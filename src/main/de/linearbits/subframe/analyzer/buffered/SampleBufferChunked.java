@@ -0,0 +1,191 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.buffered;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sample buffer, which stores values on the heap in chunks of fixed size. Adding a value never
+ * copies existing values and there is no upper limit on the number of values. Chunks can be taken
+ * from a {@link Pool}, which is shared by all instances created via {@link #newInstance()}. When a
+ * buffer is cleared, its chunks are returned to the pool, so that no memory is allocated after
+ * warm-up. Order statistics are computed on a copy.
+ * 
+ * @author Fabian Prasser
+ */
+public class SampleBufferChunked extends SampleBuffer {
+
+    /**
+     * A pool of chunks, which can be shared by several buffers and threads
+     * 
+     * @author Fabian Prasser
+     */
+    public static class Pool {
+
+        /** Number of values per chunk, a power of two */
+        private final int            chunkSize;
+        /** Maximal number of chunks kept in the pool */
+        private final int            capacity;
+        /** Free chunks */
+        private final List<double[]> chunks = new ArrayList<double[]>();
+
+        /**
+         * Creates a new pool
+         * @param chunkSize number of values per chunk, will be rounded up to a power of two
+         * @param capacity maximal number of chunks kept in the pool
+         */
+        public Pool(int chunkSize, int capacity) {
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+            }
+            if (capacity < 0) {
+                throw new IllegalArgumentException("Invalid capacity: " + capacity);
+            }
+            this.chunkSize = Integer.highestOneBit(chunkSize) == chunkSize ? chunkSize : Integer.highestOneBit(chunkSize) << 1;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Allocates the given number of chunks in advance
+         * @param count
+         */
+        public synchronized void preallocate(int count) {
+            for (int i = 0; i < count && chunks.size() < capacity; i++) {
+                chunks.add(new double[chunkSize]);
+            }
+        }
+
+        /**
+         * Returns the number of free chunks
+         * @return
+         */
+        public synchronized int size() {
+            return chunks.size();
+        }
+
+        /**
+         * Returns chunks to the pool
+         * @param released
+         */
+        private synchronized void release(List<double[]> released) {
+            for (int i = 0; i < released.size() && chunks.size() < capacity; i++) {
+                chunks.add(released.get(i));
+            }
+        }
+
+        /**
+         * Takes a chunk from the pool or allocates a new one
+         * @return
+         */
+        private synchronized double[] take() {
+            return chunks.isEmpty() ? new double[chunkSize] : chunks.remove(chunks.size() - 1);
+        }
+    }
+
+    /** Default number of values per chunk */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 12;
+
+    /** Number of values per chunk, a power of two */
+    private final int            chunkSize;
+    /** Bits to shift an index to obtain the chunk */
+    private final int            shift;
+    /** Mask to obtain the offset of an index in a chunk */
+    private final int            mask;
+    /** Pool, with a capacity of zero if chunks are not reused */
+    private final Pool           pool;
+    /** Chunks */
+    private final List<double[]> chunks  = new ArrayList<double[]>();
+    /** Current chunk */
+    private double[]             current = null;
+    /** Current number of values */
+    private int                  count   = 0;
+
+    /**
+     * Creates a buffer with the default chunk size, without pooling
+     */
+    public SampleBufferChunked() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a buffer with the given chunk size, without pooling
+     * @param chunkSize number of values per chunk, will be rounded up to a power of two
+     */
+    public SampleBufferChunked(int chunkSize) {
+        this(new Pool(chunkSize, 0));
+    }
+
+    /**
+     * Creates a buffer, which takes its chunks from the given pool
+     * @param pool
+     */
+    public SampleBufferChunked(Pool pool) {
+        this.pool = pool;
+        this.chunkSize = pool.chunkSize;
+        this.shift = Integer.numberOfTrailingZeros(chunkSize);
+        this.mask = chunkSize - 1;
+    }
+
+    @Override
+    public void add(double val) {
+        int offset = count & mask;
+        if (offset == 0 && (count >>> shift) == chunks.size()) {
+            current = pool.take();
+            chunks.add(current);
+        }
+        current[offset] = val;
+        count++;
+        invalidate();
+    }
+
+    @Override
+    public void clear() {
+        pool.release(chunks);
+        chunks.clear();
+        current = null;
+        count = 0;
+        invalidate();
+    }
+
+    @Override
+    public double get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return chunks.get(index >>> shift)[index & mask];
+    }
+
+    /**
+     * Returns the pool
+     * @return
+     */
+    public Pool getPool() {
+        return pool;
+    }
+
+    @Override
+    public SampleBuffer newInstance() {
+        return new SampleBufferChunked(pool);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.buffered;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sample buffer, which stores integral values, e.g. timings in nanoseconds or sizes in bytes,
+ * in compressed form. Values are stored as the zig-zag encoded difference to the previous value
+ * using a variable-length encoding with seven bits per byte. Values are grouped into blocks, the
+ * first value of which is stored uncompressed, so that values can be accessed without decoding all
+ * previous values. Sequential access decodes each value only once. Order statistics are computed
+ * on a decoded copy.
+ * 
+ * @author Fabian Prasser
+ */
+public class SampleBufferCompressed extends SampleBuffer {
+
+    /** Default number of values per block */
+    public static final int    DEFAULT_BLOCK_SIZE = 128;
+
+    /** Bits to shift a position to obtain the chunk */
+    private static final int   CHUNK_SHIFT        = 16;
+    /** Number of bytes per chunk */
+    private static final int   CHUNK_SIZE         = 1 << CHUNK_SHIFT;
+    /** Mask to obtain the offset of a position in a chunk */
+    private static final int   CHUNK_MASK         = CHUNK_SIZE - 1;
+
+    /** Number of values per block */
+    private final int          blockSize;
+    /** Chunks of encoded data */
+    private final List<byte[]> chunks             = new ArrayList<byte[]>();
+    /** Position of the encoded data of each block */
+    private long[]             offsets            = new long[16];
+    /** First value of each block */
+    private long[]             bases              = new long[16];
+    /** Number of bytes written */
+    private long               position           = 0;
+    /** Last value added */
+    private long               previous           = 0;
+    /** Current number of values */
+    private int                count              = 0;
+    /** Index of the last value decoded, -1 if none */
+    private int                cursorIndex        = -1;
+    /** Position after the last value decoded */
+    private long               cursorPosition     = 0;
+    /** Last value decoded */
+    private long               cursorValue        = 0;
+
+    /**
+     * Creates a buffer with the default block size
+     */
+    public SampleBufferCompressed() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a buffer with the given block size. Larger blocks result in less overhead, but
+     * random access to values becomes more expensive.
+     * @param blockSize
+     */
+    public SampleBufferCompressed(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Adds a value, which must be integral
+     * @param val
+     */
+    @Override
+    public void add(double val) {
+        long value = (long) val;
+        if (value != val) {
+            throw new IllegalArgumentException("Only integral values can be compressed: " + val);
+        }
+        if (count % blockSize == 0) {
+            int block = count / blockSize;
+            if (block == offsets.length) {
+                offsets = Arrays.copyOf(offsets, block * 2);
+                bases = Arrays.copyOf(bases, block * 2);
+            }
+            offsets[block] = position;
+            bases[block] = value;
+        } else {
+            long delta = value - previous;
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                write((byte) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            write((byte) zigzag);
+        }
+        previous = value;
+        count++;
+        invalidate();
+    }
+
+    @Override
+    public void clear() {
+        chunks.clear();
+        position = 0;
+        previous = 0;
+        count = 0;
+        cursorIndex = -1;
+        invalidate();
+    }
+
+    @Override
+    public double get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        int block = index / blockSize;
+        if (cursorIndex < 0 || cursorIndex > index || cursorIndex / blockSize != block) {
+            cursorIndex = block * blockSize;
+            cursorPosition = offsets[block];
+            cursorValue = bases[block];
+        }
+        while (cursorIndex < index) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = read(cursorPosition++);
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            cursorValue += (zigzag >>> 1) ^ -(zigzag & 1);
+            cursorIndex++;
+        }
+        return cursorValue;
+    }
+
+    /**
+     * Returns the number of bytes used for storing the values, excluding unused space in the last chunk
+     * @return
+     */
+    public long getCompressedSize() {
+        return position + (count + blockSize - 1) / blockSize * 16L;
+    }
+
+    @Override
+    public SampleBuffer newInstance() {
+        return new SampleBufferCompressed(blockSize);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Reads the byte at the given position
+     * @param position
+     * @return
+     */
+    private byte read(long position) {
+        return chunks.get((int) (position >>> CHUNK_SHIFT))[(int) (position & CHUNK_MASK)];
+    }
+
+    /**
+     * Writes the given byte
+     * @param b
+     */
+    private void write(byte b) {
+        int chunk = (int) (position >>> CHUNK_SHIFT);
+        if (chunk == chunks.size()) {
+            chunks.add(new byte[CHUNK_SIZE]);
+        }
+        chunks.get(chunk)[(int) (position & CHUNK_MASK)] = b;
+        position++;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.buffered;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sample buffer, which stores values outside of the heap in segments of fixed size. Segments
+ * are either direct byte buffers or memory-mapped temporary files. Adding values never copies
+ * existing values and the values do not influence measurements of heap usage. Order statistics
+ * are computed on a copy on the heap, which is released via {@link #release()}.<br>
+ * <br>
+ * Memory for a given number of values can be reserved in advance, so that no memory is allocated
+ * while values are added, e.g. in a measured region. Buffers created via {@link #newInstance()}
+ * reserve the capacity specified for the template. Memory-mapped files are created for many
+ * segments at once, by default for {@link #DEFAULT_SEGMENTS_PER_FILE} segments, which are also
+ * reserved by default.
+ * 
+ * @author Fabian Prasser
+ */
+public class SampleBufferOffHeap extends SampleBuffer {
+
+    /** Default number of values per segment */
+    public static final int    DEFAULT_SEGMENT_SIZE      = 1 << 16;
+    /** Default number of segments per memory-mapped file */
+    public static final int    DEFAULT_SEGMENTS_PER_FILE = 64;
+
+    /** Number of values per segment, a power of two */
+    private final int          segmentSize;
+    /** Bits to shift an index to obtain the segment */
+    private final int          shift;
+    /** Mask to obtain the offset of an index in a segment */
+    private final int          mask;
+    /** Directory for memory-mapped files, null if direct buffers are used */
+    private final File         directory;
+    /** Number of values for which new instances reserve memory */
+    private final int          capacity;
+    /** Segments */
+    private List<DoubleBuffer> segments = new ArrayList<DoubleBuffer>();
+    /** Current segment */
+    private DoubleBuffer       current  = null;
+    /** Current number of values */
+    private int                count    = 0;
+
+    /**
+     * Creates a buffer backed by direct byte buffers with the default segment size
+     */
+    public SampleBufferOffHeap() {
+        this(DEFAULT_SEGMENT_SIZE, null);
+    }
+
+    /**
+     * Creates a buffer backed by memory-mapped temporary files in the given directory, with the default segment size
+     * @param directory
+     */
+    public SampleBufferOffHeap(File directory) {
+        this(DEFAULT_SEGMENT_SIZE, directory);
+    }
+
+    /**
+     * Creates a buffer with the given segment size. If the directory is null, direct byte buffers
+     * are used, which are allocated when needed. Otherwise, segments are memory-mapped temporary
+     * files in the given directory and new instances reserve one file in advance.
+     * @param segmentSize number of values per segment, will be rounded up to a power of two
+     * @param directory
+     */
+    public SampleBufferOffHeap(int segmentSize, File directory) {
+        this(segmentSize, directory, directory == null ? 0 : -1);
+    }
+
+    /**
+     * Creates a buffer with the given segment size, whose new instances reserve memory for the given
+     * number of values in advance. If the directory is null, direct byte buffers are used, otherwise
+     * segments are memory-mapped temporary files in the given directory.
+     * @param segmentSize number of values per segment, will be rounded up to a power of two
+     * @param directory
+     * @param capacity number of values, -1 for one memory-mapped file
+     */
+    public SampleBufferOffHeap(int segmentSize, File directory, int capacity) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        if (capacity < -1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.segmentSize = Integer.highestOneBit(segmentSize) == segmentSize ? segmentSize : Integer.highestOneBit(segmentSize) << 1;
+        this.shift = Integer.numberOfTrailingZeros(this.segmentSize);
+        this.mask = this.segmentSize - 1;
+        this.directory = directory;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void add(double val) {
+        if ((count & mask) == 0) {
+            int segment = count >>> shift;
+            if (segment == segments.size()) {
+                allocate(1);
+            }
+            current = segments.get(segment);
+        }
+        current.put(count & mask, val);
+        count++;
+        invalidate();
+    }
+
+    @Override
+    public void clear() {
+        segments.clear();
+        current = null;
+        count = 0;
+        invalidate();
+    }
+
+    @Override
+    public double get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return segments.get(index >>> shift).get(index & mask);
+    }
+
+    /**
+     * Returns the number of values for which memory has been allocated
+     * @return
+     */
+    public long getReservedCapacity() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    @Override
+    public SampleBuffer newInstance() {
+        SampleBufferOffHeap result = new SampleBufferOffHeap(segmentSize, directory, capacity);
+        result.reserve(capacity == -1 ? segmentSize * getSegmentsPerFile() : capacity);
+        return result;
+    }
+
+    /**
+     * Allocates memory for the given number of values in advance, so that adding them does not
+     * allocate memory or create files
+     * @param capacity
+     */
+    public void reserve(int capacity) {
+        int required = (int) (((long) capacity + segmentSize - 1) >>> shift);
+        while (segments.size() < required) {
+            allocate(required - segments.size());
+        }
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Allocates new segments. Memory-mapped files are created for at least
+     * {@link #getSegmentsPerFile()} segments.
+     * @param number
+     */
+    private void allocate(int number) {
+        int bytes = segmentSize * 8;
+        if (directory == null) {
+            for (int i = 0; i < number; i++) {
+                segments.add(ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder()).asDoubleBuffer());
+            }
+            return;
+        }
+        number = Math.min(Math.max(number, getSegmentsPerFile()), Integer.MAX_VALUE / bytes);
+        try {
+            // The mapping remains valid after the file has been closed and deleted
+            File file = File.createTempFile("subframe", ".samples", directory);
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) number * bytes);
+                for (int i = 0; i < number; i++) {
+                    buffer.limit((i + 1) * bytes);
+                    buffer.position(i * bytes);
+                    segments.add(buffer.slice().order(ByteOrder.nativeOrder()).asDoubleBuffer());
+                }
+            } finally {
+                raf.close();
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the number of segments per memory-mapped file
+     * @return
+     */
+    private int getSegmentsPerFile() {
+        return Math.max(1, Math.min(DEFAULT_SEGMENTS_PER_FILE, Integer.MAX_VALUE / (segmentSize * 8)));
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.stream;
+
+/**
+ * A histogram with logarithmically sized buckets, which answers quantile queries with a bounded
+ * relative error. Any value <code>v</code> is mapped to a bucket <code>i</code> with
+ * <code>gamma^(i-1) < |v| <= gamma^i</code>, where <code>gamma = (1 + e) / (1 - e)</code> for
+ * relative error <code>e</code>. Memory consumption therefore only depends on the ratio between
+ * the largest and the smallest absolute value, e.g. about 1,400 buckets for values between one nanosecond
+ * and one hour with a relative error of 1%. Histograms with the same relative error can be merged.
+ * 
+ * @author Fabian Prasser
+ */
+public class LogHistogram {
+
+    /**
+     * Dense storage of the counts for a contiguous range of bucket indices
+     * @author Fabian Prasser
+     */
+    private static class Store {
+
+        /** Counts, null if empty */
+        private long[] counts = null;
+        /** Bucket index of the first element */
+        private int    offset = 0;
+
+        /**
+         * Adds to the given bucket
+         * @param index
+         * @param count
+         */
+        private void add(int index, long count) {
+            if (counts == null) {
+                counts = new long[16];
+                offset = index - 8;
+            } else if (index < offset) {
+                grow(index, offset + counts.length - 1);
+            } else if (index >= offset + counts.length) {
+                grow(offset, index);
+            }
+            counts[index - offset] += count;
+        }
+
+        /**
+         * Adds all counts of the given store
+         * @param other
+         */
+        private void add(Store other) {
+            if (other.counts == null) {
+                return;
+            }
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        /**
+         * Grows the store to cover the given range of indices
+         * @param min
+         * @param max
+         */
+        private void grow(int min, int max) {
+            int size = Math.max(max - min + 1, counts.length * 2);
+            int offset = min < this.offset ? max - size + 1 : min;
+            long[] nCounts = new long[size];
+            System.arraycopy(counts, 0, nCounts, this.offset - offset, counts.length);
+            this.counts = nCounts;
+            this.offset = offset;
+        }
+    }
+
+    /** The default relative error */
+    public static final double DEFAULT_RELATIVE_ERROR = 0.01d;
+
+    /** The relative error */
+    private final double       relativeError;
+    /** Base of the bucket boundaries */
+    private final double       gamma;
+    /** Logarithm of gamma */
+    private final double       logGamma;
+    /** Counts of positive values */
+    private final Store        positive = new Store();
+    /** Counts of negative values, indexed by absolute value */
+    private final Store        negative = new Store();
+    /** Number of zeros */
+    private long               zeros    = 0;
+    /** Total number of values */
+    private long               count    = 0;
+    /** Smallest value */
+    private double             min      = Double.MAX_VALUE;
+    /** Largest value */
+    private double             max      = -Double.MAX_VALUE;
+
+    /**
+     * Creates a new histogram with the default relative error of 1%
+     */
+    public LogHistogram() {
+        this(DEFAULT_RELATIVE_ERROR);
+    }
+
+    /**
+     * Creates a new histogram with the given relative error
+     * @param relativeError
+     */
+    public LogHistogram(double relativeError) {
+        if (relativeError <= 0d || relativeError >= 1d) {
+            throw new IllegalArgumentException("Invalid relative error: " + relativeError);
+        }
+        this.relativeError = relativeError;
+        this.gamma = (1d + relativeError) / (1d - relativeError);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Adds a value
+     * @param value
+     */
+    public void add(double value) {
+        add(value, 1L);
+    }
+
+    /**
+     * Adds a value the given number of times. Values must be finite.
+     * @param value
+     * @param count
+     */
+    public void add(double value, long count) {
+        checkFinite(value);
+        if (count <= 0) {
+            return;
+        }
+        if (value > 0d) {
+            positive.add(getIndex(value), count);
+        } else if (value < 0d) {
+            negative.add(getIndex(-value), count);
+        } else {
+            zeros += count;
+        }
+        this.count += count;
+        this.min = Math.min(this.min, value);
+        this.max = Math.max(this.max, value);
+    }
+
+    /**
+     * Adds the positive values <code>first - i * step</code> for <code>0 <= i < count</code>.
+     * Costs are proportional to the number of buckets covered, not to the number of values.
+     * @param first
+     * @param step
+     * @param count
+     */
+    public void add(double first, double step, long count) {
+        checkFinite(first);
+        checkFinite(step);
+        if (count <= 0) {
+            return;
+        }
+        double last = first - (double) (count - 1) * step;
+        if (step <= 0d || last <= 0d) {
+            throw new IllegalArgumentException("Invalid sequence: " + first + " - i * " + step + " for i < " + count);
+        }
+        long i = 0;
+        while (i < count) {
+
+            // Values in the bucket of the current value are greater than its lower bound
+            int index = getIndex(first - (double) i * step);
+            double lower = Math.pow(gamma, index - 1);
+            long end = Math.min(count, (long) Math.ceil((first - lower) / step));
+            long n = Math.max(1L, end - i);
+            positive.add(index, n);
+            i += n;
+        }
+        this.count += count;
+        this.min = Math.min(this.min, last);
+        this.max = Math.max(this.max, first);
+    }
+
+    /**
+     * Removes all values
+     */
+    public void clear() {
+        positive.counts = null;
+        negative.counts = null;
+        zeros = 0;
+        count = 0;
+        min = Double.MAX_VALUE;
+        max = -Double.MAX_VALUE;
+    }
+
+    /**
+     * Returns the number of values
+     * @return
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the largest value
+     * @return
+     */
+    public double getMax() {
+        if (count == 0) throw new RuntimeException("No values specified!");
+        return max;
+    }
+
+    /**
+     * Returns the smallest value
+     * @return
+     */
+    public double getMin() {
+        if (count == 0) throw new RuntimeException("No values specified!");
+        return min;
+    }
+
+    /**
+     * Returns an estimate of the given percentile. Uses the same definition of ranks
+     * as the buffered percentile analyzer.
+     * @param percentile
+     * @return
+     */
+    public double getPercentile(double percentile) {
+        if (count == 0) throw new RuntimeException("No values specified!");
+        long rank = (long) Math.ceil(percentile * (double) count);
+        if (rank > count - 1) rank = count - 1;
+        return getValueAtRank(rank);
+    }
+
+    /**
+     * Returns the relative error
+     * @return
+     */
+    public double getRelativeError() {
+        return relativeError;
+    }
+
+    /**
+     * Returns an estimate of the value with the given rank in sorted order, starting at zero
+     * @param rank
+     * @return
+     */
+    public double getValueAtRank(long rank) {
+        if (count == 0) throw new RuntimeException("No values specified!");
+        if (rank <= 0) return min;
+        if (rank >= count - 1) return max;
+        long seen = 0;
+        if (negative.counts != null) {
+            for (int i = negative.counts.length - 1; i >= 0; i--) {
+                seen += negative.counts[i];
+                if (seen > rank) return clamp(-getValue(negative.offset + i));
+            }
+        }
+        seen += zeros;
+        if (seen > rank) return 0d;
+        if (positive.counts != null) {
+            for (int i = 0; i < positive.counts.length; i++) {
+                seen += positive.counts[i];
+                if (seen > rank) return clamp(getValue(positive.offset + i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Merges the given histogram into this histogram
+     * @param other
+     */
+    public void merge(LogHistogram other) {
+        if (other.relativeError != this.relativeError) {
+            throw new IllegalArgumentException("Incompatible relative error: " + other.relativeError);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        positive.add(other.positive);
+        negative.add(other.negative);
+        zeros += other.zeros;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Checks whether the given value is finite. Infinite values and NaN cannot be mapped to a bucket.
+     * @param value
+     */
+    private void checkFinite(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Invalid value: " + value);
+        }
+    }
+
+    /**
+     * Clamps the estimate to the range of values
+     * @param value
+     * @return
+     */
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Returns the bucket index of the given positive value
+     * @param value
+     * @return
+     */
+    private int getIndex(double value) {
+        double index = Math.ceil(Math.log(value) / logGamma);
+        if (Math.abs(index) > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Value out of range for relative error " + relativeError + ": " + value);
+        }
+        return (int) index;
+    }
+
+    /**
+     * Returns the representative value of the given bucket
+     * @param index
+     * @return
+     */
+    private double getValue(int index) {
+        return 2d * Math.pow(gamma, index) / (gamma + 1d);
+    }
+}
@@ -18,12 +18,13 @@
 package de.linearbits.subframe.analyzer.stream;
 
 import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.DoubleAnalyzer;
 
 /**
  * Base class for analyzers that compute the result incrementally, based on incoming values
  * @author Fabian Prasser
  */
-public abstract class StreamAnalyzer extends Analyzer<Double>{
+public abstract class StreamAnalyzer extends Analyzer<Double> implements DoubleAnalyzer {
 
     protected double value = 0xDEADBEEF;
     
@@ -35,6 +36,11 @@ public abstract class StreamAnalyzer extends Analyzer<Double>{
         super(label);
     }
 
+    @Override
+    public void add(Double val) {
+        add(val.doubleValue());
+    }
+
     @Override
     public String getValue() {
         if (value == 0XDEADBEEF) {
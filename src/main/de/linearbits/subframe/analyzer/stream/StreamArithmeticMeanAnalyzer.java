@@ -0,0 +1,75 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.stream;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.SequenceAnalyzer;
+
+/**
+ * A stream analyzer that computes the arithmetic mean
+ * @author Fabian Prasser
+ */
+public class StreamArithmeticMeanAnalyzer extends StreamAnalyzer implements SequenceAnalyzer {
+
+    /** Number of values*/
+    private long count = 0;
+
+    /**
+     * Creates a new instance
+     */
+    public StreamArithmeticMeanAnalyzer(){
+        super(Analyzer.ARITHMETIC_MEAN);
+        value = 0;
+    }
+
+    @Override
+    public void add(double val) {
+        count++;
+        value += (val - value) / (double)count;
+    }
+
+    @Override
+    public void add(double first, double step, long count) {
+        if (count <= 0) return;
+        long total = this.count + count;
+        double mean = first - (double) (count - 1) * step / 2d;
+        value += (mean - value) * ((double) count / (double) total);
+        this.count = total;
+    }
+
+    @Override
+    public String getValue() {
+        if (count==0) throw new RuntimeException("No values specified!");
+        return String.valueOf(value);
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        StreamArithmeticMeanAnalyzer analyzer = (StreamArithmeticMeanAnalyzer) other;
+        if (analyzer.count == 0) return;
+        long total = count + analyzer.count;
+        value += (analyzer.value - value) * ((double)analyzer.count / (double)total);
+        count = total;
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new StreamArithmeticMeanAnalyzer();
+    }
+}
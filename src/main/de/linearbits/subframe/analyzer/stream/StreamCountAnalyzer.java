@@ -18,12 +18,13 @@
 package de.linearbits.subframe.analyzer.stream;
 
 import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.SequenceAnalyzer;
 
 /**
  * A stream analyzer that computes the count
  * @author Fabian Prasser
  */
-public class StreamCountAnalyzer extends StreamAnalyzer{
+public class StreamCountAnalyzer extends StreamAnalyzer implements SequenceAnalyzer {
 
     /**
      * Creates a new instance
@@ -34,10 +35,21 @@ public class StreamCountAnalyzer extends StreamAnalyzer{
     }
 
     @Override
-    public void add(Double val) {
+    public void add(double val) {
         value ++;
     }
 
+    @Override
+    public void add(double first, double step, long count) {
+        if (count > 0) value += count;
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        value += ((StreamCountAnalyzer) other).value;
+    }
+
     @Override
     public Analyzer<Double> newInstance() {
         return new StreamCountAnalyzer();
@@ -0,0 +1,71 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.stream;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+
+/**
+ * A stream analyzer that counts the values below a given threshold, e.g. the granularity of a clock
+ * @author Fabian Prasser
+ */
+public class StreamCountBelowAnalyzer extends StreamAnalyzer{
+
+    /** The threshold*/
+    private final double threshold;
+    /** Name of the threshold, null if its value is part of the label*/
+    private final String name;
+
+    /**
+     * Creates a new instance, whose label contains the threshold
+     * @param threshold
+     */
+    public StreamCountBelowAnalyzer(double threshold){
+        this(null, threshold);
+    }
+
+    /**
+     * Creates a new instance, whose label contains the given name instead of the threshold. This
+     * keeps labels stable if the threshold differs between executions, e.g. if it has been calibrated.
+     * @param name
+     * @param threshold
+     */
+    public StreamCountBelowAnalyzer(String name, double threshold){
+        super(name == null ? Analyzer.COUNT_BELOW(threshold) : Analyzer.COUNT_BELOW(name));
+        this.threshold = threshold;
+        this.name = name;
+        value = 0;
+    }
+
+    @Override
+    public void add(double val) {
+        if (val < threshold) {
+            value++;
+        }
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        value += ((StreamCountBelowAnalyzer) other).value;
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new StreamCountBelowAnalyzer(name, threshold);
+    }
+}
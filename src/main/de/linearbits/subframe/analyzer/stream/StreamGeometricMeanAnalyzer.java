@@ -0,0 +1,63 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.stream;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+
+/**
+ * A stream analyzer that computes the geometric mean as the exponential of the mean of logarithms
+ * @author Fabian Prasser
+ */
+public class StreamGeometricMeanAnalyzer extends StreamAnalyzer{
+
+    /** Number of values*/
+    private long count = 0;
+
+    /**
+     * Creates a new instance
+     */
+    public StreamGeometricMeanAnalyzer(){
+        super(Analyzer.GEOMETRIC_MEAN);
+        value = 0;
+    }
+
+    @Override
+    public void add(double val) {
+        count++;
+        value += Math.log(val + 1d);
+    }
+
+    @Override
+    public String getValue() {
+        if (count==0) throw new RuntimeException("No values specified!");
+        return String.valueOf(Math.exp(value / (double)count) - 1d);
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        StreamGeometricMeanAnalyzer analyzer = (StreamGeometricMeanAnalyzer) other;
+        value += analyzer.value;
+        count += analyzer.count;
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new StreamGeometricMeanAnalyzer();
+    }
+}
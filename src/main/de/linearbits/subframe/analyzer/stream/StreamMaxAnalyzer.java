@@ -18,26 +18,38 @@
 package de.linearbits.subframe.analyzer.stream;
 
 import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.SequenceAnalyzer;
 
 /**
  * A stream analyzer that computes the maximum
  * @author Fabian Prasser
  */
-public class StreamMaxAnalyzer extends StreamAnalyzer{
+public class StreamMaxAnalyzer extends StreamAnalyzer implements SequenceAnalyzer {
 
     /**
      * Creates a new instance
      */
     public StreamMaxAnalyzer(){
         super(Analyzer.MAXIMUM);
-        value = Double.MIN_VALUE;
+        value = -Double.MAX_VALUE;
     }
 
     @Override
-    public void add(Double val) {
+    public void add(double val) {
         value = Math.max(value, val);
     }
 
+    @Override
+    public void add(double first, double step, long count) {
+        if (count > 0) value = Math.max(value, first);
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        value = Math.max(value, ((StreamMaxAnalyzer) other).value);
+    }
+
     @Override
     public Analyzer<Double> newInstance() {
         return new StreamMaxAnalyzer();
@@ -0,0 +1,82 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.stream;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.SequenceAnalyzer;
+
+/**
+ * A stream analyzer that estimates the median with a bounded relative error in constant memory
+ * @see LogHistogram
+ * @author Fabian Prasser
+ */
+public class StreamMedianAnalyzer extends StreamAnalyzer implements SequenceAnalyzer {
+
+    /** The histogram*/
+    private final LogHistogram histogram;
+
+    /**
+     * Creates a new instance with a relative error of 1%
+     */
+    public StreamMedianAnalyzer(){
+        this(LogHistogram.DEFAULT_RELATIVE_ERROR);
+    }
+
+    /**
+     * Creates a new instance with the given relative error
+     * @param relativeError
+     */
+    public StreamMedianAnalyzer(double relativeError){
+        super(Analyzer.MEDIAN);
+        this.histogram = new LogHistogram(relativeError);
+    }
+
+    @Override
+    public void add(double val) {
+        histogram.add(val);
+    }
+
+    @Override
+    public void add(double first, double step, long count) {
+        histogram.add(first, step, count);
+    }
+
+    @Override
+    public String getValue() {
+        long count = histogram.getCount();
+        if (count == 0) throw new RuntimeException("No values specified!");
+        if (count % 2 == 1) {
+            return String.valueOf(histogram.getValueAtRank(count / 2));
+        } else {
+            double low = histogram.getValueAtRank(count / 2 - 1);
+            double high = histogram.getValueAtRank(count / 2);
+            return String.valueOf((low + high) / 2.0);
+        }
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        histogram.merge(((StreamMedianAnalyzer) other).histogram);
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new StreamMedianAnalyzer(histogram.getRelativeError());
+    }
+}
@@ -18,12 +18,13 @@
 package de.linearbits.subframe.analyzer.stream;
 
 import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.SequenceAnalyzer;
 
 /**
  * A stream analyzer that computes the minimum
  * @author Fabian Prasser
  */
-public class StreamMinAnalyzer extends StreamAnalyzer{
+public class StreamMinAnalyzer extends StreamAnalyzer implements SequenceAnalyzer {
 
     /**
      * Creates a new instance
@@ -34,9 +35,21 @@ public class StreamMinAnalyzer extends StreamAnalyzer{
     }
 
     @Override
-    public void add(Double val) {
+    public void add(double val) {
         value = Math.min(value, val);
     }
+
+    @Override
+    public void add(double first, double step, long count) {
+        if (count > 0) value = Math.min(value, first - (double) (count - 1) * step);
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        value = Math.min(value, ((StreamMinAnalyzer) other).value);
+    }
+
     @Override
     public Analyzer<Double> newInstance() {
         return new StreamMinAnalyzer();
@@ -0,0 +1,90 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.stream;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.SequenceAnalyzer;
+
+/**
+ * A stream analyzer that estimates a percentile with a bounded relative error in constant memory
+ * @see LogHistogram
+ * @author Fabian Prasser
+ */
+public class StreamPercentileAnalyzer extends StreamAnalyzer implements SequenceAnalyzer {
+
+    /** The percentile*/
+    private final double       percentile;
+    /** The histogram*/
+    private final LogHistogram histogram;
+
+    /**
+     * Creates a new instance with a relative error of 1%
+     * @param percentile
+     */
+    public StreamPercentileAnalyzer(double percentile){
+        this(percentile, LogHistogram.DEFAULT_RELATIVE_ERROR);
+    }
+
+    /**
+     * Creates a new instance with the given relative error
+     * @param percentile
+     * @param relativeError
+     */
+    public StreamPercentileAnalyzer(double percentile, double relativeError){
+        super(Analyzer.PERCENTILE(percentile));
+        if (percentile <= 0d || percentile >= 1d) {
+            throw new IllegalArgumentException("Invalid percentile: "+percentile);
+        }
+        this.percentile = percentile;
+        this.histogram = new LogHistogram(relativeError);
+    }
+
+    @Override
+    public void add(double val) {
+        histogram.add(val);
+    }
+
+    @Override
+    public void add(double first, double step, long count) {
+        histogram.add(first, step, count);
+    }
+
+    /**
+     * Returns the underlying histogram
+     * @return
+     */
+    public LogHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public String getValue() {
+        return String.valueOf(histogram.getPercentile(percentile));
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        histogram.merge(((StreamPercentileAnalyzer) other).histogram);
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new StreamPercentileAnalyzer(percentile, histogram.getRelativeError());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.stream;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.TimedAnalyzer;
+
+/**
+ * A stream analyzer that computes the average rate per second, e.g. operations or bytes per second,
+ * as the sum of all values divided by the time between the first and the last timestamp
+ * @author Fabian Prasser
+ */
+public class StreamRateAnalyzer extends StreamAnalyzer implements TimedAnalyzer {
+
+    /** First timestamp*/
+    private long   first = Long.MAX_VALUE;
+    /** Last timestamp*/
+    private long   last  = Long.MIN_VALUE;
+    /** Sum of values*/
+    private double sum   = 0d;
+
+    /**
+     * Creates a new instance
+     */
+    public StreamRateAnalyzer() {
+        super(Analyzer.RATE);
+    }
+
+    @Override
+    public void add(double val) {
+        add(System.nanoTime(), val);
+    }
+
+    @Override
+    public void add(long timestamp, double val) {
+        if (timestamp < first) first = timestamp;
+        if (timestamp > last) last = timestamp;
+        sum += val;
+    }
+
+    @Override
+    public String getValue() {
+        if (first == Long.MAX_VALUE) throw new RuntimeException("No values specified!");
+        if (first == last) throw new RuntimeException("Need values with different timestamps");
+        return String.valueOf(sum * 1000000000d / (double) (last - first));
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        StreamRateAnalyzer analyzer = (StreamRateAnalyzer) other;
+        first = Math.min(first, analyzer.first);
+        last = Math.max(last, analyzer.last);
+        sum += analyzer.sum;
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new StreamRateAnalyzer();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.stream;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+
+/**
+ * A stream analyzer that computes the standard deviation with Welford's algorithm
+ * @author Fabian Prasser
+ */
+public class StreamStandardDeviationAnalyzer extends StreamAnalyzer{
+
+    /** Number of values*/
+    private long   count = 0;
+    /** Sum of squared differences from the mean*/
+    private double m2    = 0d;
+
+    /**
+     * Creates a new instance
+     */
+    public StreamStandardDeviationAnalyzer(){
+        super(Analyzer.STANDARD_DEVIATION);
+        value = 0;
+    }
+
+    @Override
+    public void add(double val) {
+        count++;
+        double delta = val - value;
+        value += delta / (double)count;
+        m2 += delta * (val - value);
+    }
+
+    @Override
+    public String getValue() {
+        if (count==0) throw new RuntimeException("No values specified!");
+        if (count==1) return String.valueOf(0d);
+        return String.valueOf(Math.sqrt(m2 / (double)(count-1)));
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        StreamStandardDeviationAnalyzer analyzer = (StreamStandardDeviationAnalyzer) other;
+        if (analyzer.count == 0) return;
+        long total = count + analyzer.count;
+        double delta = analyzer.value - value;
+        value += delta * ((double)analyzer.count / (double)total);
+        m2 += analyzer.m2 + delta * delta * ((double)count * (double)analyzer.count / (double)total);
+        count = total;
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new StreamStandardDeviationAnalyzer();
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.stream;
+
+import java.util.Arrays;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+
+/**
+ * A stream analyzer that detects the end of the warm-up phase in a sequence of values with the
+ * MSER-5 heuristic (Marginal Standard Error Rule, applied to batch means of five values). The
+ * analyzer reports either the number of warm-up values or the arithmetic mean or standard deviation
+ * of the values in the steady state. Memory is bounded: the sums of at most 1024 batches are kept,
+ * and the batch size is doubled by combining adjacent batches whenever this limit is reached, which
+ * halves the resolution of the truncation point. Values are analyzed in the order in which they are
+ * added. Merging treats the sequences of both analyzers as replications of the same experiment and
+ * combines batches with the same index, as in Welch's method. Values added after merging start
+ * a new batch behind the last merged batch.
+ * @author Fabian Prasser
+ */
+public class StreamSteadyStateAnalyzer extends StreamAnalyzer {
+
+    /**
+     * The value reported by the analyzer
+     * 
+     * @author Fabian Prasser
+     */
+    public static enum Result {
+        /** The number of warm-up values */
+        WARMUP,
+        /** The arithmetic mean in the steady state */
+        ARITHMETIC_MEAN,
+        /** The standard deviation in the steady state */
+        STANDARD_DEVIATION
+    }
+
+    /** Default number of values per batch */
+    public static final int  DEFAULT_BATCH_SIZE = 5;
+
+    /** Maximal number of batches, must be even */
+    private static final int MAX_BATCHES        = 1024;
+
+    /**
+     * Returns the label
+     * @param result
+     * @param batchSize
+     * @return
+     */
+    private static String getLabel(Result result, int batchSize) {
+        String method = "MSER-" + batchSize;
+        switch (result) {
+        case WARMUP:
+            return Analyzer.WARMUP(method);
+        case ARITHMETIC_MEAN:
+            return Analyzer.ARITHMETIC_MEAN_STEADY_STATE(method);
+        default:
+            return Analyzer.STANDARD_DEVIATION_STEADY_STATE(method);
+        }
+    }
+
+    /** The result*/
+    private final Result result;
+    /** Initial number of values per batch*/
+    private final int    batchSize;
+    /** Current number of values per batch*/
+    private long         size;
+    /** First value, which is subtracted from all values to preserve precision*/
+    private double       shift   = 0d;
+    /** Number of values*/
+    private long         count   = 0;
+    /** Number of non-empty batches*/
+    private int          batches = 0;
+    /** Index of the batch that receives the next value*/
+    private int          index   = 0;
+    /** Number of values in the batch that receives the next value*/
+    private long         fill    = 0;
+    /** Sums of values, per batch*/
+    private double[]     sums    = new double[16];
+    /** Sums of squared values, per batch*/
+    private double[]     squares = new double[16];
+    /** Number of values, per batch*/
+    private long[]       counts  = new long[16];
+
+    /**
+     * Creates a new instance with MSER-5
+     * @param result
+     */
+    public StreamSteadyStateAnalyzer(Result result) {
+        this(result, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new instance with the given initial batch size
+     * @param result
+     * @param batchSize
+     */
+    public StreamSteadyStateAnalyzer(Result result, int batchSize) {
+        super(getLabel(result, batchSize));
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        this.result = result;
+        this.batchSize = batchSize;
+        this.size = batchSize;
+    }
+
+    @Override
+    public void add(double val) {
+        if (count == 0) {
+            shift = val;
+        }
+        if (fill == size) {
+            fill = 0;
+            if (++index == MAX_BATCHES) {
+                coarsen();
+            }
+            ensureCapacity(index + 1);
+        }
+        double x = val - shift;
+        sums[index] += x;
+        squares[index] += x * x;
+        counts[index]++;
+        if (fill++ == 0) {
+            batches = Math.max(batches, index + 1);
+        }
+        count++;
+    }
+
+    @Override
+    public String getValue() {
+        if (count == 0) throw new RuntimeException("No values specified!");
+        
+        int warmup = getWarmupBatches();
+        if (result == Result.WARMUP) {
+            return String.valueOf((double) (warmup * size));
+        }
+        
+        double n = 0d;
+        double sum = 0d;
+        double squared = 0d;
+        for (int i = warmup; i < batches; i++) {
+            n += counts[i];
+            sum += sums[i];
+            squared += squares[i];
+        }
+        if (result == Result.ARITHMETIC_MEAN) {
+            return String.valueOf(shift + sum / n);
+        }
+        if (n < 2d) {
+            return String.valueOf(0d);
+        }
+        double dev = squared - sum * sum / n;
+        return String.valueOf(Math.sqrt(Math.max(0d, dev) / (n - 1d)));
+    }
+
+    /**
+     * Returns the number of warm-up values per sequence, which is a multiple of the current batch
+     * size. The truncation point minimizes the marginal standard error of the remaining batch means
+     * and is restricted to the first half of the batches.
+     * @return
+     */
+    public long getWarmup() {
+        return count == 0 ? 0 : getWarmupBatches() * size;
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        StreamSteadyStateAnalyzer analyzer = (StreamSteadyStateAnalyzer) other;
+        if (analyzer.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            shift = analyzer.shift;
+        }
+        
+        // Align batch sizes, which are both powers of two multiples of the initial batch size
+        while (size < analyzer.size || (analyzer.batches - 1) / (int) (size / analyzer.size) >= MAX_BATCHES) {
+            coarsen();
+        }
+        int ratio = (int) (size / analyzer.size);
+        int required = (analyzer.batches - 1) / ratio + 1;
+        ensureCapacity(required);
+        
+        // Shift values of the other analyzer to the origin of this analyzer
+        double delta = analyzer.shift - shift;
+        for (int i = 0; i < analyzer.batches; i++) {
+            int target = i / ratio;
+            double sum = analyzer.sums[i];
+            long number = analyzer.counts[i];
+            sums[target] += sum + number * delta;
+            squares[target] += analyzer.squares[i] + 2d * delta * sum + number * delta * delta;
+            counts[target] += number;
+        }
+        batches = Math.max(batches, required);
+        count += analyzer.count;
+        
+        // Continue with a new batch after the last merged batch
+        index = batches - 1;
+        fill = size;
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new StreamSteadyStateAnalyzer(result, batchSize);
+    }
+
+    /**
+     * Doubles the batch size by combining adjacent batches
+     */
+    private void coarsen() {
+        int length = (batches + 1) / 2;
+        for (int i = 0; i < length; i++) {
+            int first = 2 * i;
+            int second = first + 1;
+            sums[i] = sums[first] + (second < batches ? sums[second] : 0d);
+            squares[i] = squares[first] + (second < batches ? squares[second] : 0d);
+            counts[i] = counts[first] + (second < batches ? counts[second] : 0);
+        }
+        Arrays.fill(sums, length, sums.length, 0d);
+        Arrays.fill(squares, length, squares.length, 0d);
+        Arrays.fill(counts, length, counts.length, 0);
+        fill += (index % 2) * size;
+        index /= 2;
+        batches = length;
+        size *= 2;
+    }
+
+    /**
+     * Makes sure that the given number of batches can be stored
+     * @param capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > sums.length) {
+            int length = Math.min(MAX_BATCHES, Math.max(capacity, sums.length * 2));
+            sums = Arrays.copyOf(sums, length);
+            squares = Arrays.copyOf(squares, length);
+            counts = Arrays.copyOf(counts, length);
+        }
+    }
+
+    /**
+     * Returns the number of warm-up batches, determined in one backward pass over the batch means
+     * @return
+     */
+    private int getWarmupBatches() {
+        int best = 0;
+        double min = Double.MAX_VALUE;
+        double sum = 0d;
+        double squared = 0d;
+        for (int d = batches - 1; d >= 0; d--) {
+            double mean = sums[d] / (double) counts[d];
+            sum += mean;
+            squared += mean * mean;
+            double k = batches - d;
+            if (d <= batches / 2 && k > 1) {
+                double mser = (squared - sum * sum / k) / (k * k);
+                if (mser <= min) {
+                    min = mser;
+                    best = d;
+                }
+            }
+        }
+        return best;
+    }
+}
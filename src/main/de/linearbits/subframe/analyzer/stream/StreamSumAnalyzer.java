@@ -18,12 +18,13 @@
 package de.linearbits.subframe.analyzer.stream;
 
 import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.SequenceAnalyzer;
 
 /**
  * A stream analyzer that computes the sum
  * @author Fabian Prasser
  */
-public class StreamSumAnalyzer extends StreamAnalyzer{
+public class StreamSumAnalyzer extends StreamAnalyzer implements SequenceAnalyzer {
 
     /**
      * Creates a new instance
@@ -34,10 +35,21 @@ public class StreamSumAnalyzer extends StreamAnalyzer{
     }
 
     @Override
-    public void add(Double val) {
+    public void add(double val) {
         value += val;
     }
+
+    @Override
+    public void add(double first, double step, long count) {
+        if (count > 0) value += (double) count * (first - (double) (count - 1) * step / 2d);
+    }
     
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        value += ((StreamSumAnalyzer) other).value;
+    }
+
     @Override
     public Analyzer<Double> newInstance() {
         return new StreamSumAnalyzer();
@@ -0,0 +1,252 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.TimedAnalyzer;
+
+/**
+ * A stream analyzer that keeps a histogram for each interval of a given length, e.g. one per
+ * second, so that latencies can be plotted over the course of a run. Only the most recent
+ * intervals are kept in a ring buffer, which bounds the memory required. Intervals are
+ * relative to the first timestamp. Values with earlier timestamps are attributed to the first
+ * interval, values that are older than the oldest interval kept are ignored. Analyzers can be
+ * merged, e.g. when values are recorded by multiple threads.<br>
+ * <br>
+ * The value of this analyzer is the number of non-empty intervals. The time series is available
+ * via {@link #getLines()} or {@link de.linearbits.subframe.Benchmark#getTimeSeries(int)}.
+ * @author Fabian Prasser
+ */
+public class StreamTimeSeriesAnalyzer extends StreamAnalyzer implements TimedAnalyzer {
+
+    /** Default number of intervals kept */
+    public static final int     DEFAULT_CAPACITY = 3600;
+    /** Label of the column containing the start of an interval in seconds */
+    public static final String  TIME             = "Time";
+
+    /** Percentiles reported for each interval */
+    private static final double[] PERCENTILES    = { 0.5d, 0.9d, 0.99d };
+
+    /** Length of an interval in nanoseconds*/
+    private final long           interval;
+    /** Histograms of the intervals, used as a ring buffer*/
+    private final LogHistogram[] histograms;
+    /** Sums of the values of the intervals*/
+    private final double[]       sums;
+    /** Timestamp at which the first interval starts*/
+    private long                 origin           = Long.MIN_VALUE;
+    /** Index of the oldest interval kept*/
+    private long                 oldest           = 0;
+    /** Index of the latest interval*/
+    private long                 latest           = -1;
+
+    /**
+     * Creates a new instance, which keeps up to 3600 intervals
+     * @param interval length of an interval in nanoseconds
+     */
+    public StreamTimeSeriesAnalyzer(long interval) {
+        this(interval, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new instance
+     * @param interval length of an interval in nanoseconds
+     * @param capacity maximal number of intervals kept
+     */
+    public StreamTimeSeriesAnalyzer(long interval, int capacity) {
+        super(Analyzer.TIME_SERIES(interval / 1000000000d));
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid interval: " + interval);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.interval = interval;
+        this.histograms = new LogHistogram[capacity];
+        this.sums = new double[capacity];
+    }
+
+    @Override
+    public void add(double val) {
+        add(System.nanoTime(), val);
+    }
+
+    @Override
+    public void add(long timestamp, double val) {
+        if (origin == Long.MIN_VALUE) {
+            origin = timestamp;
+        }
+        int slot = getSlot(timestamp);
+        if (slot != -1) {
+            histograms[slot].add(val);
+            sums[slot] += val;
+        }
+    }
+
+    /**
+     * Returns the labels of the columns of the time series
+     * @return
+     */
+    public String[] getHeader() {
+        String[] result = new String[PERCENTILES.length + 4];
+        result[0] = TIME;
+        result[1] = Analyzer.COUNT;
+        result[2] = Analyzer.ARITHMETIC_MEAN;
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            result[i + 3] = PERCENTILES[i] == 0.5d ? Analyzer.MEDIAN : Analyzer.PERCENTILE(PERCENTILES[i]);
+        }
+        result[result.length - 1] = Analyzer.MAXIMUM;
+        return result;
+    }
+
+    /**
+     * Returns one line for each non-empty interval kept, with columns as defined by {@link #getHeader()}
+     * @return
+     */
+    public List<String[]> getLines() {
+        List<String[]> result = new ArrayList<String[]>();
+        for (long index = oldest; index <= latest; index++) {
+            int slot = (int) (index % histograms.length);
+            LogHistogram histogram = histograms[slot];
+            long count = histogram.getCount();
+            if (count == 0) {
+                continue;
+            }
+            String[] line = new String[PERCENTILES.length + 4];
+            line[0] = String.valueOf((double) (index * interval) / 1000000000d);
+            line[1] = String.valueOf((double) count);
+            line[2] = String.valueOf(sums[slot] / (double) count);
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                line[i + 3] = String.valueOf(histogram.getPercentile(PERCENTILES[i]));
+            }
+            line[line.length - 1] = String.valueOf(histogram.getMax());
+            result.add(line);
+        }
+        return result;
+    }
+
+    @Override
+    public String getValue() {
+        if (origin == Long.MIN_VALUE) throw new RuntimeException("No values specified!");
+        return String.valueOf((double) getLines().size());
+    }
+
+    /**
+     * Merges the intervals of the given analyzer. Intervals are aligned to the earlier of both
+     * first timestamps. Intervals of the other analyzer are attributed to the interval in which
+     * they start.
+     */
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        StreamTimeSeriesAnalyzer analyzer = (StreamTimeSeriesAnalyzer) other;
+        if (analyzer.origin == Long.MIN_VALUE) {
+            return;
+        }
+        if (origin == Long.MIN_VALUE) {
+            origin = analyzer.origin;
+        } else if (analyzer.origin < origin) {
+            
+            // Re-insert own intervals relative to the new origin
+            LogHistogram[] ownHistograms = histograms.clone();
+            double[] ownSums = sums.clone();
+            long ownOrigin = origin;
+            long ownOldest = oldest;
+            long ownLatest = latest;
+            Arrays.fill(histograms, null);
+            Arrays.fill(sums, 0d);
+            origin = analyzer.origin;
+            oldest = 0;
+            latest = -1;
+            merge(ownOrigin, ownOldest, ownLatest, ownHistograms, ownSums);
+        }
+        merge(analyzer.origin, analyzer.oldest, analyzer.latest, analyzer.histograms, analyzer.sums);
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new StreamTimeSeriesAnalyzer(interval, histograms.length);
+    }
+
+    /**
+     * Clears the given slot
+     * @param slot
+     */
+    private void clear(int slot) {
+        if (histograms[slot] == null) {
+            histograms[slot] = new LogHistogram();
+        } else {
+            histograms[slot].clear();
+        }
+        sums[slot] = 0d;
+    }
+
+    /**
+     * Returns the slot of the interval containing the given timestamp, advancing the ring buffer
+     * if required. Returns -1 if the interval is older than the oldest interval kept.
+     * @param timestamp
+     * @return
+     */
+    private int getSlot(long timestamp) {
+        long index = Math.max(0L, (timestamp - origin) / interval);
+        if (index < oldest) {
+            return -1;
+        }
+        if (index - latest >= histograms.length) {
+            
+            // All intervals kept are outdated, e.g. after a long idle phase
+            for (int slot = 0; slot < histograms.length; slot++) {
+                clear(slot);
+            }
+            latest = index;
+            oldest = Math.max(oldest, latest - histograms.length + 1);
+        }
+        while (latest < index) {
+            latest++;
+            clear((int) (latest % histograms.length));
+            oldest = Math.max(oldest, latest - histograms.length + 1);
+        }
+        return (int) (index % histograms.length);
+    }
+
+    /**
+     * Merges the given intervals
+     * @param origin
+     * @param oldest
+     * @param latest
+     * @param histograms
+     * @param sums
+     */
+    private void merge(long origin, long oldest, long latest, LogHistogram[] histograms, double[] sums) {
+        for (long index = oldest; index <= latest; index++) {
+            int source = (int) (index % histograms.length);
+            if (histograms[source].getCount() == 0) {
+                continue;
+            }
+            int slot = getSlot(origin + index * interval);
+            if (slot != -1) {
+                this.histograms[slot].merge(histograms[source]);
+                this.sums[slot] += sums[source];
+            }
+        }
+    }
+}
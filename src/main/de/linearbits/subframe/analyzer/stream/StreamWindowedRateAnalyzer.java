@@ -0,0 +1,149 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.analyzer.stream;
+
+import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.TimedAnalyzer;
+
+/**
+ * A stream analyzer that computes the peak or trough rate per second within a sliding window
+ * of a given length, e.g. to characterize the sustained throughput of a service. Values are
+ * summed up in buckets of a tenth of the window, which is also the step by which the window
+ * slides. Buckets start at multiples of their length, so that the buckets of analyzers that are
+ * merged, e.g. of different threads, are aligned. Only complete windows are considered, i.e. the
+ * bucket containing the last timestamp is ignored, as is the bucket containing the first timestamp
+ * unless it starts with it. Memory is proportional to the duration of the run divided by the size
+ * of a bucket.
+ * @author Fabian Prasser
+ */
+public class StreamWindowedRateAnalyzer extends StreamAnalyzer implements TimedAnalyzer {
+
+    /** Number of buckets per window*/
+    private static final int STEPS   = 10;
+
+    /** Length of the window in nanoseconds*/
+    private final long       window;
+    /** Length of a bucket in nanoseconds*/
+    private final long       resolution;
+    /** Compute peak or trough*/
+    private final boolean    peak;
+    /** Timestamp at which the first bucket starts, a multiple of the length of a bucket*/
+    private long             origin  = 0;
+    /** Sums of values per bucket*/
+    private double[]         buckets = null;
+    /** First timestamp*/
+    private long             first   = Long.MAX_VALUE;
+    /** Last timestamp*/
+    private long             last    = Long.MIN_VALUE;
+
+    /**
+     * Creates a new instance
+     * @param window length of the window in nanoseconds
+     * @param peak whether to compute the peak or the trough rate
+     */
+    public StreamWindowedRateAnalyzer(long window, boolean peak) {
+        super(peak ? Analyzer.PEAK_RATE(window / 1000000000d) : Analyzer.TROUGH_RATE(window / 1000000000d));
+        if (window < STEPS) {
+            throw new IllegalArgumentException("Invalid window: " + window);
+        }
+        this.window = window;
+        this.resolution = window / STEPS;
+        this.peak = peak;
+    }
+
+    @Override
+    public void add(double val) {
+        add(System.nanoTime(), val);
+    }
+
+    @Override
+    public void add(long timestamp, double val) {
+        if (timestamp < first) first = timestamp;
+        if (timestamp > last) last = timestamp;
+        addToBucket(timestamp, val);
+    }
+
+    @Override
+    public String getValue() {
+        if (buckets == null) throw new RuntimeException("No values specified!");
+        int from = (int) ((first - origin + resolution - 1) / resolution);
+        int to = (int) ((last - origin) / resolution);
+        if (to - from < STEPS) {
+            throw new RuntimeException("Need values spanning more than one window");
+        }
+        double sum = 0d;
+        for (int i = from; i < from + STEPS; i++) {
+            sum += buckets[i];
+        }
+        double result = sum;
+        for (int i = from + STEPS; i < to; i++) {
+            sum += buckets[i] - buckets[i - STEPS];
+            result = peak ? Math.max(result, sum) : Math.min(result, sum);
+        }
+        return String.valueOf(result * 1000000000d / (double) (resolution * STEPS));
+    }
+
+    @Override
+    public void merge(Analyzer<Double> other) {
+        checkMerge(other);
+        StreamWindowedRateAnalyzer analyzer = (StreamWindowedRateAnalyzer) other;
+        if (analyzer.buckets == null) return;
+        first = Math.min(first, analyzer.first);
+        last = Math.max(last, analyzer.last);
+        for (int i = 0; i < analyzer.buckets.length; i++) {
+            if (analyzer.buckets[i] != 0d) {
+                addToBucket(analyzer.origin + i * analyzer.resolution, analyzer.buckets[i]);
+            }
+        }
+    }
+
+    @Override
+    public Analyzer<Double> newInstance() {
+        return new StreamWindowedRateAnalyzer(window, peak);
+    }
+
+    /**
+     * Adds the value to the bucket containing the given timestamp
+     * @param timestamp
+     * @param val
+     */
+    private void addToBucket(long timestamp, double val) {
+        if (buckets == null) {
+            long bucket = timestamp / resolution;
+            if (timestamp % resolution < 0) {
+                bucket--;
+            }
+            origin = bucket * resolution;
+            buckets = new double[STEPS * 4];
+        } else if (timestamp < origin) {
+            // Prepend buckets
+            int shift = (int) ((origin - timestamp + resolution - 1) / resolution);
+            double[] result = new double[buckets.length + shift];
+            System.arraycopy(buckets, 0, result, shift, buckets.length);
+            buckets = result;
+            origin -= shift * resolution;
+        }
+        int index = (int) ((timestamp - origin) / resolution);
+        if (index >= buckets.length) {
+            double[] result = new double[Math.max(index + 1, buckets.length * 2)];
+            System.arraycopy(buckets, 0, result, 0, buckets.length);
+            buckets = result;
+        }
+        buckets[index] += val;
+    }
+}
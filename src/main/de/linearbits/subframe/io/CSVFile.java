@@ -40,6 +40,7 @@ import de.linearbits.objectselector.SelectorBuilder;
 import de.linearbits.objectselector.datatypes.DataType;
 import de.linearbits.objectselector.util.ArrayAccessor;
 import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedAnalyzer;
 import de.linearbits.subframe.analyzer.buffered.BufferedArithmeticMeanAnalyzer;
 import de.linearbits.subframe.analyzer.buffered.BufferedCountAnalyzer;
 import de.linearbits.subframe.analyzer.buffered.BufferedGeometricMeanAnalyzer;
@@ -60,7 +61,7 @@ import de.linearbits.subframe.analyzer.buffered.BufferedSumAnalyzer;
 public class CSVFile {
     
     /** The separator */
-    private static final char   SEPERATOR = ';';
+    static final char           SEPERATOR = ';';
     /** The newline */
     private static final String NEWLINE   = "\n";
     
@@ -76,14 +77,16 @@ public class CSVFile {
     }
     
     /**
-     * Writes the file to disk
+     * Writes the line to the given writer. Missing values are written as empty fields.
      * @param writer
      * @param line
      * @throws IOException
      */
-    private static void write(Writer writer, String[] line) throws IOException {
+    static void write(Writer writer, String[] line) throws IOException {
         for (int i = 0; i < line.length; i++) {
-            writer.write(line[i]);
+            if (line[i] != null) {
+                writer.write(line[i]);
+            }
             if (i < line.length - 1) {
                 writer.write(String.valueOf(SEPERATOR));
             } else {
@@ -126,7 +129,7 @@ public class CSVFile {
         this.buildHeaderMap();
         String line = reader.readLine();
         while (line != null) {
-            this.addLine(line.split(String.valueOf(SEPERATOR)));
+            this.addLine(line.split(String.valueOf(SEPERATOR), -1));
             line = reader.readLine();
         }
         reader.close();
@@ -284,6 +287,8 @@ public class CSVFile {
             BufferedPercentileAnalyzer perc95 = new BufferedPercentileAnalyzer(0.95d);
             BufferedPercentileAnalyzer perc97 = new BufferedPercentileAnalyzer(0.97d);
             BufferedPercentileAnalyzer perc99 = new BufferedPercentileAnalyzer(0.99d);
+            BufferedAnalyzer.share(min, max, count, sum, gm, am, me, dev,
+                                   perc25, perc50, perc75, perc80, perc90, perc95, perc97, perc99);
             
             for (double value : bucket2Values.get(bucket)) {
                 min.add(value);
@@ -0,0 +1,106 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2013 Fabian Prasser
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The union of the headers of all runs written to a result sink. Columns of later runs,
+ * which have not been seen before, are appended to the end.
+ * 
+ * @author Fabian Prasser
+ */
+class ResultHeader {
+
+    /** The first header */
+    private final List<String>                      header1 = new ArrayList<String>();
+    /** The second header */
+    private final List<String>                      header2 = new ArrayList<String>();
+    /** Mapping labels to indices */
+    private final Map<String, Map<String, Integer>> map     = new HashMap<String, Map<String, Integer>>();
+
+    /**
+     * Extends the header with the given columns and returns the index of each column
+     * @param header1
+     * @param header2
+     * @return
+     */
+    int[] extend(String[] header1, String[] header2) {
+        if (header1.length != header2.length) {
+            throw new IllegalArgumentException("Headers must have the same length");
+        }
+        int[] indices = new int[header1.length];
+        for (int i = 0; i < header1.length; i++) {
+            Map<String, Integer> labels = map.get(header1[i]);
+            if (labels == null) {
+                labels = new HashMap<String, Integer>();
+                map.put(header1[i], labels);
+            }
+            Integer index = labels.get(header2[i]);
+            if (index == null) {
+                index = this.header1.size();
+                labels.put(header2[i], index);
+                this.header1.add(header1[i]);
+                this.header2.add(header2[i]);
+            }
+            indices[i] = index;
+        }
+        return indices;
+    }
+
+    /**
+     * Returns the first header
+     * @return
+     */
+    String[] getHeader1() {
+        return header1.toArray(new String[header1.size()]);
+    }
+
+    /**
+     * Returns the second header
+     * @return
+     */
+    String[] getHeader2() {
+        return header2.toArray(new String[header2.size()]);
+    }
+
+    /**
+     * Returns the number of columns
+     * @return
+     */
+    int size() {
+        return header1.size();
+    }
+
+    /**
+     * Returns the given line with its values at the given indices of this header
+     * @param line
+     * @param indices
+     * @return
+     */
+    String[] map(String[] line, int[] indices) {
+        String[] result = new String[size()];
+        for (int i = 0; i < line.length; i++) {
+            result[indices[i]] = line[i];
+        }
+        return result;
+    }
+}
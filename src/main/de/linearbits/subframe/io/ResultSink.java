@@ -0,0 +1,44 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2013 Fabian Prasser
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.io;
+
+import java.io.IOException;
+
+/**
+ * A sink to which the results of finished runs are written. Allows benchmarks to
+ * release the analyzers of a run as soon as the run has been completed.
+ * 
+ * @author Fabian Prasser
+ */
+public interface ResultSink {
+
+    /**
+     * Writes the result of a finished run
+     * @param header1 the first header
+     * @param header2 the second header
+     * @param line the results of the run
+     * @throws IOException
+     */
+    public void write(String[] header1, String[] header2, String[] line) throws IOException;
+
+    /**
+     * Closes the sink. No further results will be written.
+     * @throws IOException
+     */
+    public void close() throws IOException;
+}
@@ -0,0 +1,113 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2013 Fabian Prasser
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A result sink, which directly writes all results to a csv file on disk. If a run has
+ * columns which have not been written before, they are appended to the header and the
+ * file is rewritten once, leaving the new columns of previous runs empty.
+ * 
+ * @author Fabian Prasser
+ */
+public class ResultSinkFile implements ResultSink {
+
+    /** The file */
+    private final File         file;
+    /** The writer, null if nothing has been written */
+    private Writer             writer = null;
+    /** The union of all headers */
+    private final ResultHeader header = new ResultHeader();
+
+    /**
+     * Creates a new sink writing to the given file
+     * @param file
+     */
+    public ResultSinkFile(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void write(String[] header1, String[] header2, String[] line) throws IOException {
+        int size = header.size();
+        int[] indices = header.extend(header1, header2);
+        if (writer == null) {
+            writer = new BufferedWriter(new FileWriter(file));
+            CSVFile.write(writer, header.getHeader1());
+            CSVFile.write(writer, header.getHeader2());
+        } else if (header.size() != size) {
+            rewrite(header.size() - size);
+        }
+        CSVFile.write(writer, header.map(line, indices));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * Rewrites the file with the current header, appending the given number of empty
+     * fields to all lines written so far
+     * @param columns
+     * @throws IOException
+     */
+    private void rewrite(int columns) throws IOException {
+        
+        // Prepare
+        writer.close();
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < columns; i++) {
+            padding.append(CSVFile.SEPERATOR);
+        }
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        
+        // Copy
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        writer = new BufferedWriter(new FileWriter(temp));
+        CSVFile.write(writer, header.getHeader1());
+        CSVFile.write(writer, header.getHeader2());
+        reader.readLine();
+        reader.readLine();
+        String line = reader.readLine();
+        while (line != null) {
+            writer.write(line);
+            writer.write(padding.toString());
+            writer.write('\n');
+            line = reader.readLine();
+        }
+        reader.close();
+        writer.close();
+        
+        // Replace
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        writer = new BufferedWriter(new FileWriter(file, true));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2013 Fabian Prasser
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.linearbits.subframe.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A result sink, which collects all results in a csv file in memory. The header of the
+ * file is the union of the headers of all runs.
+ * 
+ * @author Fabian Prasser
+ */
+public class ResultSinkMemory implements ResultSink {
+
+    /** The union of all headers */
+    private final ResultHeader   header = new ResultHeader();
+    /** The lines */
+    private final List<String[]> lines  = new ArrayList<String[]>();
+
+    @Override
+    public void write(String[] header1, String[] header2, String[] line) {
+        lines.add(header.map(line, header.extend(header1, header2)));
+    }
+
+    @Override
+    public void close() {
+        // Empty by design
+    }
+
+    /**
+     * Returns the collected results, which are empty if no results have been written
+     * @return
+     */
+    public CSVFile getFile() {
+        CSVFile file = new CSVFile(header.getHeader1(), header.getHeader2());
+        for (String[] line : lines) {
+            file.addLine(Arrays.copyOf(line, header.size()));
+        }
+        return file;
+    }
+}
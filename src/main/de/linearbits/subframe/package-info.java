@@ -22,7 +22,9 @@
  * <ul>
  * <li>The class {@link Benchmark} is the main benchmark class.</li>
  * <li>The class {@link BenchmarkSynchronized} is a synchronized implementation of the main benchmark class.</li>
+ * <li>The class {@link BenchmarkThreadLocal} is a thread-safe implementation of the main benchmark class, which records values without locking.</li>
  * <li>The class {@link Measures} provides methods for measuring system behavior.</li>
+ * <li>The class {@link MeasuresThreadLocal} stores timers and baselines separately for each thread.</li>
  * </ul>
  * 
  * @author Fabian Prasser
@@ -0,0 +1,754 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.linearbits.subframe.Benchmark;
+import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.DoubleAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedArithmeticMeanAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedBootstrapAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedConfidenceIntervalAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedConfidenceIntervalAnalyzer.Statistic;
+import de.linearbits.subframe.analyzer.buffered.BufferedGeometricMeanAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedMaxAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedMedianAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedMinAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedOutlierAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedOutlierAnalyzer.Method;
+import de.linearbits.subframe.analyzer.buffered.BufferedOutlierAnalyzer.Result;
+import de.linearbits.subframe.analyzer.buffered.BufferedPercentileAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedStandardDeviationAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.OrderStatistics;
+import de.linearbits.subframe.analyzer.buffered.SampleBuffer;
+import de.linearbits.subframe.analyzer.buffered.SampleBufferArray;
+import de.linearbits.subframe.analyzer.buffered.SampleBufferChunked;
+import de.linearbits.subframe.analyzer.buffered.SampleBufferCompressed;
+import de.linearbits.subframe.analyzer.buffered.SampleBufferOffHeap;
+import de.linearbits.subframe.analyzer.stream.LogHistogram;
+import de.linearbits.subframe.analyzer.stream.StreamArithmeticMeanAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamCountAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamGeometricMeanAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamMaxAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamMedianAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamMinAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamPercentileAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamRateAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamStandardDeviationAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamSteadyStateAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamSumAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamTimeSeriesAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamWindowedRateAnalyzer;
+import de.linearbits.subframe.io.CSVFile;
+import de.linearbits.subframe.io.CSVLine;
+
+/**
+ * Class with JUnit tests
+ * @author Fabian Prasser
+ */
+public class TestAnalyzers extends TestBase {
+
+    @Test
+    public void testMerge() {
+
+        Analyzer<?>[] analyzers = new Analyzer<?>[] { new BufferedArithmeticMeanAnalyzer(),
+                                                      new BufferedStandardDeviationAnalyzer(),
+                                                      new BufferedMedianAnalyzer(),
+                                                      new BufferedPercentileAnalyzer(0.9d),
+                                                      new StreamCountAnalyzer(),
+                                                      new StreamSumAnalyzer(),
+                                                      new StreamMinAnalyzer(),
+                                                      new StreamMaxAnalyzer(),
+                                                      new StreamArithmeticMeanAnalyzer(),
+                                                      new StreamStandardDeviationAnalyzer(),
+                                                      new StreamGeometricMeanAnalyzer(),
+                                                      new StreamPercentileAnalyzer(0.99d),
+                                                      new StreamMedianAnalyzer() };
+
+        for (Analyzer<?> analyzer : analyzers) {
+            checkMerge(analyzer, 4);
+        }
+    }
+
+    @Test
+    public void testStream() {
+        checkEquals(new BufferedArithmeticMeanAnalyzer(), new StreamArithmeticMeanAnalyzer());
+        checkEquals(new BufferedStandardDeviationAnalyzer(), new StreamStandardDeviationAnalyzer());
+        checkEquals(new BufferedGeometricMeanAnalyzer(), new StreamGeometricMeanAnalyzer());
+    }
+
+    @Test
+    public void testStreamPercentile() {
+        for (double percentile : new double[] { 0.01d, 0.25d, 0.5d, 0.9d, 0.99d, 0.999d }) {
+            BufferedPercentileAnalyzer expected = new BufferedPercentileAnalyzer(percentile);
+            StreamPercentileAnalyzer actual = new StreamPercentileAnalyzer(percentile, 0.01d);
+            Random random = new Random(0);
+            for (int i = 0; i < 100000; i++) {
+                double value = Math.exp(random.nextGaussian() * 3d) * 1000d;
+                expected.add(value);
+                actual.add(value);
+            }
+            double value = Double.valueOf(expected.getValue());
+            assertEquals(value, Double.valueOf(actual.getValue()), value * 0.01d);
+        }
+    }
+
+    @Test
+    public void testStreamPercentileNonFinite() {
+        StreamPercentileAnalyzer analyzer = new StreamPercentileAnalyzer(0.99d);
+        for (double value : new double[] { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN }) {
+            try {
+                analyzer.add(value);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        assertEquals(0, analyzer.getHistogram().getCount());
+        analyzer.add(Double.MAX_VALUE);
+        analyzer.add(Double.MIN_VALUE);
+        assertEquals(2, analyzer.getHistogram().getCount());
+        assertEquals(Double.MAX_VALUE, Double.valueOf(analyzer.getValue()), 0d);
+    }
+
+    @Test
+    public void testShare() {
+        BufferedAnalyzer[] shared = new BufferedAnalyzer[] { new BufferedArithmeticMeanAnalyzer(),
+                                                             new BufferedMedianAnalyzer(),
+                                                             new BufferedPercentileAnalyzer(0.9d),
+                                                             new BufferedStandardDeviationAnalyzer() };
+        BufferedAnalyzer[] separate = new BufferedAnalyzer[shared.length];
+        for (int i = 0; i < shared.length; i++) {
+            separate[i] = (BufferedAnalyzer) shared[i].newInstance();
+        }
+        BufferedAnalyzer.share(shared);
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            double value = random.nextInt(100000);
+            for (int j = 0; j < shared.length; j++) {
+                shared[j].add(value);
+                separate[j].add(value);
+            }
+        }
+        for (int i = 0; i < shared.length; i++) {
+            assertEquals(Double.valueOf(separate[i].getValue()), Double.valueOf(shared[i].getValue()), 1e-6d);
+        }
+    }
+
+    @Test
+    public void testShareFixedSize() {
+        
+        // Fixed sizes are not lost by sharing
+        try {
+            BufferedAnalyzer.share(new BufferedArithmeticMeanAnalyzer(), new BufferedMaxAnalyzer(10));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        BufferedAnalyzer.share(new BufferedMinAnalyzer(10), new BufferedMaxAnalyzer(10));
+        
+        // Benchmarks only share buffers between compatible analyzers
+        Benchmark benchmark = new Benchmark();
+        int time = benchmark.addMeasure("Time");
+        benchmark.addAnalyzer(time, new BufferedArithmeticMeanAnalyzer());
+        benchmark.addAnalyzer(time, new BufferedMaxAnalyzer(10));
+        benchmark.addRun("Test");
+        for (int i = 0; i < 10; i++) {
+            benchmark.addValue(time, i);
+        }
+        try {
+            benchmark.addValue(time, 10);
+            fail();
+        } catch (RuntimeException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testChunked() {
+        SampleBufferChunked.Pool pool = new SampleBufferChunked.Pool(10, 100);
+        SampleBufferChunked buffer = new SampleBufferChunked(pool);
+        BufferedAnalyzer median = new BufferedMedianAnalyzer();
+        BufferedAnalyzer reference = new BufferedMedianAnalyzer();
+        BufferedAnalyzer.share(buffer, median);
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            double value = random.nextInt(100000);
+            median.add(value);
+            reference.add(value);
+        }
+        assertEquals(reference.getValue(), median.getValue());
+        
+        // Chunks of 16 values are returned to the pool and reused
+        median.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(63, pool.size());
+        SampleBuffer other = buffer.newInstance();
+        other.add(1d);
+        assertEquals(62, pool.size());
+        assertEquals(1d, other.get(0));
+    }
+
+    @Test
+    public void testCompressed() {
+        SampleBufferCompressed buffer = new SampleBufferCompressed(16);
+        BufferedAnalyzer[] compressed = new BufferedAnalyzer[] { new BufferedArithmeticMeanAnalyzer(),
+                                                                 new BufferedMedianAnalyzer(),
+                                                                 new BufferedPercentileAnalyzer(0.9d) };
+        BufferedAnalyzer[] array = new BufferedAnalyzer[compressed.length];
+        for (int i = 0; i < compressed.length; i++) {
+            array[i] = (BufferedAnalyzer) compressed[i].newInstance();
+        }
+        BufferedAnalyzer.share(buffer, compressed);
+        Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            double value = i == 5000 ? Long.MIN_VALUE : 1000000 + random.nextInt(100000) - 50000;
+            for (int j = 0; j < compressed.length; j++) {
+                compressed[j].add(value);
+                array[j].add(value);
+            }
+        }
+        for (int i = 0; i < compressed.length; i++) {
+            assertEquals(array[i].getValue(), compressed[i].getValue());
+        }
+        assertEquals((double) Long.MIN_VALUE, buffer.get(5000));
+        assertTrue(buffer.getCompressedSize() < 4 * buffer.size());
+        try {
+            buffer.add(0.5d);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testConfidenceIntervals() {
+        BufferedAnalyzer[] analyzers = new BufferedAnalyzer[] { new BufferedConfidenceIntervalAnalyzer(Statistic.ARITHMETIC_MEAN, 0.95d, false),
+                                                                new BufferedConfidenceIntervalAnalyzer(Statistic.ARITHMETIC_MEAN, 0.95d, true),
+                                                                new BufferedBootstrapAnalyzer(Statistic.ARITHMETIC_MEAN, 0.95d, false),
+                                                                new BufferedBootstrapAnalyzer(Statistic.ARITHMETIC_MEAN, 0.95d, true),
+                                                                new BufferedConfidenceIntervalAnalyzer(Statistic.MEDIAN, 0.95d, false),
+                                                                new BufferedConfidenceIntervalAnalyzer(Statistic.MEDIAN, 0.95d, true),
+                                                                new BufferedBootstrapAnalyzer(Statistic.MEDIAN, 0.95d, false),
+                                                                new BufferedBootstrapAnalyzer(Statistic.MEDIAN, 0.95d, true) };
+        BufferedAnalyzer.share(analyzers);
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            double value = 100d + random.nextGaussian() * 10d;
+            for (BufferedAnalyzer analyzer : analyzers) {
+                analyzer.add(value);
+            }
+        }
+        double[] bounds = new double[analyzers.length];
+        for (int i = 0; i < analyzers.length; i++) {
+            bounds[i] = Double.valueOf(analyzers[i].getValue());
+        }
+
+        // Student-t interval has a half-width of t(0.975, 999) * 10 / sqrt(1000) = 0.62
+        assertTrue(bounds[0] < 100d && bounds[1] > 100d);
+        assertEquals(2d * 1.9623d * 10d / Math.sqrt(1000d), bounds[1] - bounds[0], 0.1d);
+
+        // Bootstrap intervals are close to analytical intervals
+        assertEquals(bounds[0], bounds[2], 0.1d);
+        assertEquals(bounds[1], bounds[3], 0.1d);
+        assertEquals(bounds[4], bounds[6], 0.3d);
+        assertEquals(bounds[5], bounds[7], 0.3d);
+        assertTrue(bounds[4] < 100d && bounds[5] > 100d);
+        
+        // Results are deterministic
+        assertEquals(String.valueOf(bounds[7]), analyzers[7].getValue());
+        
+        // Both bounds are computed from one distribution
+        final int[] sorts = new int[1];
+        SampleBuffer buffer = new SampleBufferArray(10, 1.5d) {
+            @Override
+            public double[] getSortedValues() {
+                sorts[0]++;
+                return super.getSortedValues();
+            }
+        };
+        BufferedAnalyzer lower = new BufferedBootstrapAnalyzer(Statistic.MEDIAN, 0.95d, false);
+        BufferedAnalyzer upper = new BufferedBootstrapAnalyzer(Statistic.MEDIAN, 0.95d, true);
+        BufferedAnalyzer.share(buffer, lower, upper);
+        for (int i = 0; i < 1000; i++) {
+            lower.add(i);
+            upper.add(i);
+        }
+        assertTrue(Double.valueOf(lower.getValue()) < Double.valueOf(upper.getValue()));
+        assertEquals(1, sorts[0]);
+        lower.add(1000);
+        upper.add(1000);
+        lower.getValue();
+        assertEquals(2, sorts[0]);
+    }
+
+    @Test
+    public void testOutliers() {
+        BufferedAnalyzer[] analyzers = new BufferedAnalyzer[] { new BufferedOutlierAnalyzer(Method.MAD, Result.COUNT),
+                                                                new BufferedOutlierAnalyzer(Method.MAD, Result.ARITHMETIC_MEAN),
+                                                                new BufferedOutlierAnalyzer(Method.IQR, Result.COUNT),
+                                                                new BufferedOutlierAnalyzer(Method.IQR, Result.STANDARD_DEVIATION) };
+        BufferedAnalyzer.share(analyzers);
+        BufferedAnalyzer mean = new BufferedArithmeticMeanAnalyzer();
+        BufferedAnalyzer dev = new BufferedStandardDeviationAnalyzer();
+        for (int i = 0; i < 100; i++) {
+            double value = 100d + (i % 10);
+            for (BufferedAnalyzer analyzer : analyzers) {
+                analyzer.add(value);
+            }
+            mean.add(value);
+            dev.add(value);
+        }
+        
+        // Add three outliers
+        for (int i = 0; i < 3; i++) {
+            for (BufferedAnalyzer analyzer : analyzers) {
+                analyzer.add(10000d);
+            }
+        }
+        assertEquals("3.0", analyzers[0].getValue());
+        assertEquals(Double.valueOf(mean.getValue()), Double.valueOf(analyzers[1].getValue()), 1e-9d);
+        assertEquals("3.0", analyzers[2].getValue());
+        assertEquals(Double.valueOf(dev.getValue()), Double.valueOf(analyzers[3].getValue()), 1e-9d);
+        assertEquals("Outliers (MAD 3.0)", analyzers[0].getLabel());
+    }
+
+    @Test
+    public void testSteadyState() {
+        Benchmark benchmark = new Benchmark();
+        int time = benchmark.addMeasure("Time");
+        benchmark.addSteadyStateAnalyzers(time);
+        benchmark.addRun("Test");
+        
+        // Slow warm-up of 100 values followed by a steady state around 100
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            double noise = random.nextGaussian();
+            benchmark.addValue(time, i < 100 ? 1000d - i * 9d + noise : 100d + noise);
+        }
+        CSVLine line = benchmark.getResults().iterator().next();
+        double warmup = Double.valueOf(line.get("Time", Analyzer.WARMUP("MSER-5")));
+        assertTrue(warmup >= 100d && warmup <= 110d);
+        assertEquals(100d, Double.valueOf(line.get("Time", Analyzer.ARITHMETIC_MEAN_STEADY_STATE("MSER-5"))), 0.2d);
+        assertEquals(1d, Double.valueOf(line.get("Time", Analyzer.STANDARD_DEVIATION_STEADY_STATE("MSER-5"))), 0.2d);
+    }
+
+    @Test
+    public void testSteadyStateThreadLocal() throws InterruptedException {
+        final Benchmark local = new Benchmark().getThreadLocal();
+        final int time = local.addMeasure("Time");
+        local.addSteadyStateAnalyzers(time);
+        local.addRun("Test");
+
+        // Two replications with a warm-up of 10000 values, which exceed the number of batches kept
+        Thread[] threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++) {
+            final long seed = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 100000; i++) {
+                        double noise = random.nextGaussian();
+                        local.addValue(time, i < 10000 ? 1000d - i * 0.09d + noise : 100d + noise);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        CSVLine line = local.getResults().iterator().next();
+        double warmup = Double.valueOf(line.get("Time", Analyzer.WARMUP("MSER-5")));
+        assertTrue(warmup >= 10000d && warmup <= 10000d + 640d);
+        assertEquals(100d, Double.valueOf(line.get("Time", Analyzer.ARITHMETIC_MEAN_STEADY_STATE("MSER-5"))), 0.2d);
+        assertEquals(1d, Double.valueOf(line.get("Time", Analyzer.STANDARD_DEVIATION_STEADY_STATE("MSER-5"))), 0.2d);
+    }
+
+    @Test
+    public void testSteadyStateMergeAndAdd() {
+        
+        // Values added after merging continue the merged sequence
+        for (StreamSteadyStateAnalyzer.Result result : StreamSteadyStateAnalyzer.Result.values()) {
+            StreamSteadyStateAnalyzer merged = new StreamSteadyStateAnalyzer(result);
+            StreamSteadyStateAnalyzer other = new StreamSteadyStateAnalyzer(result);
+            StreamSteadyStateAnalyzer sequential = new StreamSteadyStateAnalyzer(result);
+            for (int i = 0; i < 1000; i++) {
+                double value = i < 100 ? 1000d - i * 9d : 100d + i % 7;
+                if (i < 500) {
+                    other.add(value);
+                } else {
+                    merged.add(value);
+                }
+                sequential.add(value);
+                if (i == 499) {
+                    merged.merge(other);
+                }
+            }
+            assertEquals(Double.valueOf(sequential.getValue()), Double.valueOf(merged.getValue()), 1e-9d);
+        }
+    }
+
+    @Test
+    public void testOffHeap() throws IOException {
+        File directory = File.createTempFile("subframe", "");
+        directory.delete();
+        directory.mkdir();
+        try {
+            for (SampleBuffer buffer : new SampleBuffer[] { new SampleBufferOffHeap(16, null),
+                                                            new SampleBufferOffHeap(16, directory).newInstance(),
+                                                            new SampleBufferOffHeap(16, null, 1000).newInstance() }) {
+                long reserved = ((SampleBufferOffHeap) buffer).getReservedCapacity();
+                BufferedAnalyzer[] offheap = new BufferedAnalyzer[] { new BufferedArithmeticMeanAnalyzer(),
+                                                                      new BufferedMedianAnalyzer(),
+                                                                      new BufferedPercentileAnalyzer(0.9d),
+                                                                      new BufferedStandardDeviationAnalyzer() };
+                BufferedAnalyzer[] array = new BufferedAnalyzer[offheap.length];
+                for (int i = 0; i < offheap.length; i++) {
+                    array[i] = (BufferedAnalyzer) offheap[i].newInstance();
+                }
+                BufferedAnalyzer.share(buffer, offheap);
+                Random random = new Random(0);
+                for (int i = 0; i < 1000; i++) {
+                    double value = random.nextInt(100000);
+                    for (int j = 0; j < offheap.length; j++) {
+                        offheap[j].add(value);
+                        array[j].add(value);
+                    }
+                }
+                assertEquals(1000, buffer.size());
+                for (int i = 0; i < offheap.length; i++) {
+                    assertEquals(Double.valueOf(array[i].getValue()), Double.valueOf(offheap[i].getValue()), 1e-6d);
+                }
+                
+                // Reserved memory is used, copies for order statistics are released
+                if (reserved != 0) {
+                    assertEquals(reserved, ((SampleBufferOffHeap) buffer).getReservedCapacity());
+                }
+                double[] sorted = buffer.getSortedValues();
+                assertSame(sorted, buffer.getSortedValues());
+                offheap[1].release();
+                assertNotSame(sorted, buffer.getSortedValues());
+            }
+            assertEquals(0, directory.list().length);
+        } finally {
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testCoordinatedOmission() {
+        Benchmark benchmark = new Benchmark();
+        int latency = benchmark.addMeasure("Latency");
+        benchmark.addAnalyzer(latency, new StreamCountAnalyzer());
+        benchmark.addAnalyzer(latency, new StreamPercentileAnalyzer(0.99d));
+        benchmark.addRun("Test");
+        
+        // Requests every millisecond take 0.1 milliseconds, except for one stall of one second
+        for (int i = 0; i < 1000; i++) {
+            benchmark.addValueWithExpectedInterval(latency, i == 500 ? 1000000000d : 100000d, 1000000L);
+        }
+        CSVLine line = benchmark.getResults().iterator().next();
+        assertEquals("1999.0", line.get("Latency", Analyzer.COUNT));
+        assertTrue(Double.valueOf(line.get("Latency", Analyzer.PERCENTILE(0.99d))) > 900000000d);
+    }
+
+    @Test
+    public void testCoordinatedOmissionSequence() {
+        Benchmark benchmark = new Benchmark();
+        int latency = benchmark.addMeasure("Latency");
+        benchmark.addAnalyzer(latency, new StreamCountAnalyzer());
+        benchmark.addAnalyzer(latency, new StreamArithmeticMeanAnalyzer());
+        benchmark.addAnalyzer(latency, new StreamMinAnalyzer());
+        benchmark.addAnalyzer(latency, new StreamPercentileAnalyzer(0.5d));
+        benchmark.addRun("Test");
+
+        // A stall of one second at an interval of one microsecond is back-filled at once
+        benchmark.addValueWithExpectedInterval(latency, 1000000000d, 1000L);
+        CSVLine line = benchmark.getResults().iterator().next();
+        assertEquals("1000000.0", line.get("Latency", Analyzer.COUNT));
+        assertEquals(500000500d, Double.valueOf(line.get("Latency", Analyzer.ARITHMETIC_MEAN)), 1d);
+        assertEquals("1000.0", line.get("Latency", Analyzer.MINIMUM));
+
+        // The histogram matches adding each value individually
+        LogHistogram expected = new LogHistogram();
+        for (long i = 1; i <= 1000000L; i++) {
+            expected.add(i * 1000d);
+        }
+        LogHistogram actual = new LogHistogram();
+        actual.add(1000000000d, 1000d, 1000000L);
+        for (double p = 0.01d; p < 1d; p += 0.01d) {
+            assertEquals(expected.getPercentile(p), actual.getPercentile(p), expected.getPercentile(p) * 0.0001d);
+        }
+    }
+
+    @Test
+    public void testRates() {
+        Benchmark benchmark = new Benchmark();
+        int ops = benchmark.addMeasure("Operations");
+        benchmark.addAnalyzer(ops, new StreamRateAnalyzer());
+        benchmark.addAnalyzer(ops, new StreamWindowedRateAnalyzer(1000000000L, true));
+        benchmark.addAnalyzer(ops, new StreamWindowedRateAnalyzer(1000000000L, false));
+        benchmark.addAnalyzer(ops, new StreamSumAnalyzer());
+        benchmark.addRun("Test");
+        
+        // 10000 operations per second for five seconds, then 5000 per second, recorded via shards
+        Benchmark local = benchmark.getThreadLocal();
+        for (int i = 0; i < 1000; i++) {
+            local.addTimedValue(ops, 1000L + i * 10000000L, i < 500 ? 100d : 50d);
+        }
+        CSVLine line = local.getResults().iterator().next();
+        assertEquals(75000d / 9.99d, Double.valueOf(line.get("Operations", Analyzer.RATE)), 1e-6d);
+        assertEquals(10000d, Double.valueOf(line.get("Operations", Analyzer.PEAK_RATE(1d))), 1e-6d);
+        assertEquals(5000d, Double.valueOf(line.get("Operations", Analyzer.TROUGH_RATE(1d))), 1e-6d);
+        assertEquals("75000.0", line.get("Operations", Analyzer.SUM));
+    }
+
+    @Test
+    public void testRatesMerge() {
+        
+        // Shards with different first timestamps use the same buckets, so that a burst close
+        // to a bucket boundary is not moved to another bucket when merging
+        StreamWindowedRateAnalyzer expected = new StreamWindowedRateAnalyzer(1000000000L, true);
+        StreamWindowedRateAnalyzer first = new StreamWindowedRateAnalyzer(1000000000L, true);
+        StreamWindowedRateAnalyzer second = new StreamWindowedRateAnalyzer(1000000000L, true);
+        for (int i = 0; i < 1000; i++) {
+            long timestamp = 50000000L + i * 10000000L;
+            first.add(timestamp, 1d);
+            expected.add(timestamp, 1d);
+        }
+        second.add(73000000L, 0d);
+        expected.add(73000000L, 0d);
+        for (int i = 0; i < 10; i++) {
+            long timestamp = 9955000000L + i * 1000000L;
+            second.add(timestamp, 100d);
+            expected.add(timestamp, 100d);
+        }
+        first.merge(second);
+        assertEquals(expected.getValue(), first.getValue());
+    }
+
+    @Test
+    public void testRatesThreadLocal() throws InterruptedException {
+        Benchmark local = new Benchmark().getThreadLocal();
+        int ops = local.addMeasure("Operations");
+        local.addAnalyzer(ops, new StreamRateAnalyzer());
+        local.addAnalyzer(ops, new StreamWindowedRateAnalyzer(100000000L, true));
+        local.addRun("Test");
+        
+        // Values without timestamps are timed when they are recorded, not when shards are merged.
+        // A burst separated from the first and last value by more than a window is the only
+        // content of the peak window, regardless of how long the pauses actually take
+        local.addValue(ops, 1);
+        Thread.sleep(300);
+        for (int i = 0; i < 10; i++) {
+            local.addValue(ops, 1);
+        }
+        Thread.sleep(300);
+        local.addValue(ops, 1);
+        CSVLine line = local.getResults().iterator().next();
+        assertTrue(Double.valueOf(line.get("Operations", Analyzer.RATE)) <= 20d);
+        assertEquals(100d, Double.valueOf(line.get("Operations", Analyzer.PEAK_RATE(0.1d))), 1e-6d);
+    }
+
+    @Test
+    public void testTimeSeriesThreadLocal() throws InterruptedException {
+        Benchmark plain = new Benchmark();
+        final Benchmark local = new Benchmark().getThreadLocal();
+        for (Benchmark benchmark : new Benchmark[] { plain, local }) {
+            int latency = benchmark.addMeasure("Latency");
+            benchmark.addAnalyzer(latency, new StreamTimeSeriesAnalyzer(100000000L));
+            benchmark.addRun("Test");
+        }
+        
+        // Values are assigned to the intervals of their timestamps, not to the time of merging
+        for (int i = 0; i < 20; i++) {
+            plain.addTimedValue(0, i * 50000000L, i);
+            local.addTimedValue(0, i * 50000000L, i);
+        }
+        Iterator<CSVLine> expected = plain.getTimeSeries(0).iterator();
+        Iterator<CSVLine> actual = local.getTimeSeries(0).iterator();
+        for (int i = 0; i < 10; i++) {
+            CSVLine line = actual.next();
+            assertEquals(expected.next().get("Latency", Analyzer.ARITHMETIC_MEAN), line.get("Latency", Analyzer.ARITHMETIC_MEAN));
+            assertEquals(i * 0.1d, Double.valueOf(line.get("Latency", StreamTimeSeriesAnalyzer.TIME)), 1e-9d);
+            assertEquals("2.0", line.get("Latency", Analyzer.COUNT));
+        }
+        assertFalse(actual.hasNext());
+        
+        // Shards of different threads are merged into the same intervals
+        final Benchmark merged = new Benchmark().getThreadLocal();
+        merged.addMeasure("Latency");
+        merged.addAnalyzer(0, new StreamTimeSeriesAnalyzer(100000000L));
+        merged.addRun("Test");
+        merged.addTimedValue(0, 50000000L, 3d);
+        merged.addTimedValue(0, 150000000L, 5d);
+        Thread thread = new Thread() {
+            public void run() {
+                merged.addTimedValue(0, 0L, 1d);
+            }
+        };
+        thread.start();
+        thread.join();
+        Iterator<CSVLine> iter = merged.getTimeSeries(0).iterator();
+        CSVLine line = iter.next();
+        assertEquals("0.0", line.get("Latency", StreamTimeSeriesAnalyzer.TIME));
+        assertEquals("2.0", line.get("Latency", Analyzer.COUNT));
+        assertEquals("2.0", line.get("Latency", Analyzer.ARITHMETIC_MEAN));
+        line = iter.next();
+        assertEquals("0.1", line.get("Latency", StreamTimeSeriesAnalyzer.TIME));
+        assertEquals("1.0", line.get("Latency", Analyzer.COUNT));
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void testTimeSeries() {
+        Benchmark benchmark = new Benchmark();
+        int latency = benchmark.addMeasure("Latency");
+        benchmark.addAnalyzer(latency, new StreamTimeSeriesAnalyzer(1000000000L, 5));
+        benchmark.addRun("Test");
+        
+        // Ten seconds with latencies increasing each second
+        for (int i = 0; i < 1000; i++) {
+            benchmark.addTimedValue(latency, i * 10000000L, 100d * (i / 100 + 1));
+        }
+        assertEquals("5.0", benchmark.getResults().iterator().next().get("Latency", Analyzer.TIME_SERIES(1d)));
+        
+        // Only the last five seconds are kept
+        CSVFile series = benchmark.getTimeSeries(latency);
+        Iterator<CSVLine> iter = series.iterator();
+        for (int i = 5; i < 10; i++) {
+            CSVLine line = iter.next();
+            assertEquals("Test", line.get("", "Run"));
+            assertEquals(String.valueOf((double) i), line.get("Latency", StreamTimeSeriesAnalyzer.TIME));
+            assertEquals("100.0", line.get("Latency", Analyzer.COUNT));
+            assertEquals(100d * (i + 1), Double.valueOf(line.get("Latency", Analyzer.MEDIAN)), 100d * (i + 1) * 0.01d);
+        }
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void testTimeSeriesIdle() {
+
+        // An idle phase of one hour with intervals of one millisecond does not advance interval by interval
+        long hour = 3600L * 1000000000L;
+        long start = System.nanoTime();
+        StreamTimeSeriesAnalyzer analyzer = new StreamTimeSeriesAnalyzer(1000000L, 5);
+        analyzer.add(0L, 1d);
+        analyzer.add(1000000L, 2d);
+        for (int i = 0; i < 1000; i++) {
+            analyzer.add(i * hour, 3d);
+        }
+        assertTrue(System.nanoTime() - start < 10000000000L);
+        assertEquals("1.0", analyzer.getValue());
+
+        // Realigning to an earlier origin when merging
+        StreamTimeSeriesAnalyzer earlier = new StreamTimeSeriesAnalyzer(1000000L, 5);
+        earlier.add(-hour, 4d);
+        analyzer.merge(earlier);
+        List<String[]> lines = analyzer.getLines();
+        assertEquals(1, lines.size());
+        assertEquals(String.valueOf(1000d * 3600d), lines.get(0)[0]);
+        assertEquals("1.0", lines.get(0)[1]);
+    }
+
+    @Test
+    public void testSelection() {
+        Random random = new Random(0);
+        for (int size : new int[] { 1, 2, 15, 17, 100, 10000 }) {
+            for (int range : new int[] { 1, 3, 1000000 }) {
+                double[] values = new double[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = random.nextInt(range);
+                }
+                double[] sorted = values.clone();
+                Arrays.sort(sorted);
+                
+                // Single rank
+                int rank = random.nextInt(size);
+                assertEquals(sorted[rank], OrderStatistics.select(values.clone(), size, rank));
+                
+                // Multiple ranks
+                int low = random.nextInt(size);
+                int high = low + random.nextInt(size - low);
+                double[] partitioned = values.clone();
+                OrderStatistics.select(partitioned, size, high, low);
+                assertEquals(sorted[low], partitioned[low]);
+                assertEquals(sorted[high], partitioned[high]);
+                for (int i = low; i <= high; i++) {
+                    assertTrue(partitioned[i] >= sorted[low] && partitioned[i] <= sorted[high]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMaxNegative() {
+        StreamMaxAnalyzer max = new StreamMaxAnalyzer();
+        max.add(-3d);
+        max.add(-2d);
+        assertEquals("-2.0", max.getValue());
+    }
+
+    /**
+     * Checks whether both analyzers compute the same value
+     * @param expected
+     * @param actual
+     */
+    private void checkEquals(DoubleAnalyzer expected, DoubleAnalyzer actual) {
+        Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            double value = random.nextInt(100000);
+            expected.add(value);
+            actual.add(value);
+        }
+        double value = Double.valueOf(((Analyzer<?>) expected).getValue());
+        assertEquals(value, Double.valueOf(((Analyzer<?>) actual).getValue()), Math.abs(value) * 1e-9d);
+    }
+
+    /**
+     * Checks whether merging partial results yields the same value as adding all values
+     * @param template
+     * @param parts
+     */
+    @SuppressWarnings("unchecked")
+    private void checkMerge(Analyzer<?> template, int parts) {
+
+        Random random = new Random(0);
+        Analyzer<Double> all = (Analyzer<Double>) template.newInstance();
+        Analyzer<Double> merged = (Analyzer<Double>) template.newInstance();
+        for (int i = 0; i < parts; i++) {
+            Analyzer<Double> part = (Analyzer<Double>) template.newInstance();
+            for (int j = 0; j < 1000; j++) {
+                double value = random.nextInt(100000);
+                all.add(value);
+                part.add(value);
+            }
+            merged.merge(part);
+        }
+        assertEquals(template.getLabel(), Double.valueOf(all.getValue()), Double.valueOf(merged.getValue()), 1e-6d);
+    }
+}
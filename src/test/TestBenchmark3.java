@@ -0,0 +1,180 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.linearbits.subframe.Benchmark;
+import de.linearbits.subframe.analyzer.buffered.BufferedArithmeticMeanAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamCountAnalyzer;
+import de.linearbits.subframe.io.CSVFile;
+import de.linearbits.subframe.io.CSVLine;
+import de.linearbits.subframe.io.ResultSinkFile;
+import de.linearbits.subframe.io.ResultSinkMemory;
+
+/**
+ * Class with JUnit tests
+ * @author Fabian Prasser
+ */
+public class TestBenchmark3 extends TestBase {
+
+    @Test
+    public void testResultSinkFile(){
+        
+        try {
+            String file = "src/test/temp3.csv";
+            Benchmark benchmark = new Benchmark("Size");
+            int sort = benchmark.addMeasure("Sort");
+            benchmark.addAnalyzer(sort, new BufferedArithmeticMeanAnalyzer());
+            benchmark.addAnalyzer(sort, new StreamCountAnalyzer());
+            benchmark.setResultSink(new ResultSinkFile(new File(file)));
+            
+            for (int size = 1000; size <= 100000; size *= 10) {
+                benchmark.addRun(size);
+                run(benchmark, sort, 10, size);
+            }
+            benchmark.closeResultSink();
+            
+            CSVFile csv = new CSVFile(new File(file));
+            assertEquals(3, count(csv));
+            checkAndDelete(file);
+            
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void testResultSinkFileHeaders(){
+
+        try {
+            String file = "src/test/temp4.csv";
+            Benchmark benchmark = new Benchmark("Size");
+            int sort = benchmark.addMeasure("Sort");
+            benchmark.addAnalyzer(sort, new StreamCountAnalyzer());
+            benchmark.setResultSink(new ResultSinkFile(new File(file)));
+
+            benchmark.addRun(1000);
+            run(benchmark, sort, 5, 1000);
+            benchmark.finishRun();
+            int copy = benchmark.addMeasure("Copy");
+            benchmark.addAnalyzer(sort, new BufferedArithmeticMeanAnalyzer());
+            benchmark.addAnalyzer(copy, new StreamCountAnalyzer());
+            benchmark.addRun(2000);
+            run(benchmark, sort, 3, 2000);
+            run(benchmark, copy, 2, 2000);
+            benchmark.closeResultSink();
+
+            CSVFile csv = new CSVFile(new File(file));
+            assertEquals(2, count(csv));
+            Iterator<CSVLine> iter = csv.iterator();
+            CSVLine first = iter.next();
+            assertEquals("5.0", first.get("Sort", "Count"));
+            assertEquals("", first.get("Copy", "Count"));
+            CSVLine second = iter.next();
+            assertEquals("3.0", second.get("Sort", "Count"));
+            assertEquals("2.0", second.get("Copy", "Count"));
+            checkAndDelete(file);
+
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void testResultSinkMemory(){
+        
+        Benchmark benchmark = new Benchmark("Size");
+        int sort = benchmark.addMeasure("Sort");
+        benchmark.addAnalyzer(sort, new StreamCountAnalyzer());
+        benchmark.setResultSink(new ResultSinkMemory());
+        
+        benchmark.addRun(1000);
+        run(benchmark, sort, 5, 1000);
+        benchmark.finishRun();
+        benchmark.addRun(2000);
+        run(benchmark, sort, 3, 2000);
+        
+        CSVFile csv = benchmark.getResults();
+        assertEquals(2, count(csv));
+        assertEquals("5.0", csv.iterator().next().get("Sort", "Count"));
+    }
+
+    @Test
+    public void testResultsWithoutRuns(){
+        
+        Benchmark benchmark = new Benchmark("Size");
+        benchmark.addMeasure("Sort");
+        assertEquals(0, count(benchmark.getResults()));
+        
+        benchmark.setResultSink(new ResultSinkMemory());
+        assertEquals(0, count(benchmark.getResults()));
+    }
+
+    @Test
+    public void testValuesWithoutRun(){
+        
+        Benchmark benchmark = new Benchmark("Size");
+        int sort = benchmark.addMeasure("Sort");
+        benchmark.addAnalyzer(sort, new StreamCountAnalyzer());
+        for (int i = 0; i < 2; i++) {
+            try {
+                benchmark.addValue(sort, 1d);
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            try {
+                benchmark.addValue(sort, (Object) Double.valueOf(1d));
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            benchmark.addRun(1000);
+            benchmark.addValue(sort, 1d);
+            benchmark.finishRun();
+        }
+    }
+
+    private int count(CSVFile csv) {
+        int count = 0;
+        Iterator<CSVLine> iter = csv.iterator();
+        while (iter.hasNext()) {
+            iter.next();
+            count++;
+        }
+        return count;
+    }
+
+    private void run(Benchmark benchmark, int measure, int repetitions, int size) {
+        Random r = new Random();
+        for (int i=0; i<repetitions; i++){
+            int[] data = new int[size];
+            for (int j=0; j<data.length; j++){
+                data[j] = r.nextInt();
+            }
+            benchmark.startTimer(measure);
+            Arrays.sort(data);
+            benchmark.addStopTimer(measure);
+        }
+    }
+}
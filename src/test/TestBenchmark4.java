@@ -0,0 +1,178 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.linearbits.subframe.Benchmark;
+import de.linearbits.subframe.analyzer.buffered.BufferedCountAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedMedianAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamCountAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamMaxAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamMinAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamSumAnalyzer;
+import de.linearbits.subframe.io.CSVFile;
+
+/**
+ * Class with JUnit tests
+ * @author Fabian Prasser
+ */
+public class TestBenchmark4 extends TestBase {
+
+    private static final int THREADS     = 8;
+    private static final int REPETITIONS = 10000;
+
+    @Test
+    public void testSynchronized() throws InterruptedException {
+
+        Benchmark base = new Benchmark();
+        int time = base.addMeasure("Time");
+        base.addAnalyzer(time, new StreamCountAnalyzer());
+        base.addAnalyzer(time, new StreamMinAnalyzer());
+        base.addRun("Test");
+        run(base.getSynchronized(), time);
+
+        // Each thread only measures its own sleeps
+        CSVFile results = base.getResults();
+        assertEquals(String.valueOf((double) (THREADS * 10)), results.iterator().next().get("Time", "Count"));
+        assertTrue(Double.valueOf(results.iterator().next().get("Time", "Minimum")) >= 1000000d);
+    }
+
+    @Test
+    public void testThreadLocal() throws InterruptedException {
+
+        Benchmark base = new Benchmark();
+        final Benchmark benchmark = base.getThreadLocal();
+        final int value = benchmark.addMeasure("Value");
+        final int time = benchmark.addMeasure("Time");
+        benchmark.addAnalyzer(value, new StreamCountAnalyzer());
+        benchmark.addAnalyzer(value, new StreamSumAnalyzer());
+        benchmark.addAnalyzer(time, new StreamCountAnalyzer());
+
+        for (String run : new String[] { "First", "Second" }) {
+            benchmark.addRun(run);
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < THREADS; i++) {
+                threads.add(new Thread() {
+                    public void run() {
+                        for (int j = 0; j < REPETITIONS; j++) {
+                            benchmark.startTimer(time);
+                            benchmark.addValue(value, 1);
+                            benchmark.addStopTimer(time);
+                        }
+                    }
+                });
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        CSVFile results = benchmark.getResults();
+        String expected = String.valueOf((double) (THREADS * REPETITIONS));
+        assertEquals(expected, results.iterator().next().get("Value", "Count"));
+        assertEquals(expected, results.iterator().next().get("Value", "Sum"));
+        assertEquals(expected, results.iterator().next().get("Time", "Count"));
+    }
+
+    @Test
+    public void testThreadLocalMerge() throws InterruptedException {
+
+        Benchmark base = new Benchmark();
+        final Benchmark benchmark = base.getThreadLocal();
+        final int time = benchmark.addMeasure("Time");
+        benchmark.addAnalyzer(time, new BufferedMedianAnalyzer());
+        benchmark.addAnalyzer(time, new BufferedCountAnalyzer());
+        benchmark.addAnalyzer(time, new StreamMaxAnalyzer());
+        benchmark.addRun("Test");
+        
+        // A timer keeps its baseline when another measure is added while it is running
+        benchmark.startTimer(time);
+        Thread thread = new Thread() {
+            public void run() {
+                benchmark.addMeasure("Other");
+            }
+        };
+        thread.start();
+        thread.join();
+        benchmark.addMeasure("Another");
+        benchmark.addStopTimer(time);
+        run(benchmark, time);
+
+        CSVFile results = benchmark.getResults();
+        assertEquals(String.valueOf(THREADS * 10 + 1), results.iterator().next().get("Time", "Count"));
+        assertTrue(Double.valueOf(results.iterator().next().get("Time", "Median")) >= 1000000d);
+        assertTrue(Double.valueOf(results.iterator().next().get("Time", "Maximum")) < 10000000000d);
+    }
+
+    @Test
+    public void testThreadLocalTerminated() throws Exception {
+
+        final Benchmark benchmark = new Benchmark().getThreadLocal();
+        final int value = benchmark.addMeasure("Value");
+        benchmark.addAnalyzer(value, new StreamCountAnalyzer());
+        benchmark.addRun("Test");
+        
+        // Shards of short-lived threads are dropped once they have been merged
+        for (int i = 0; i < 100; i++) {
+            Thread thread = new Thread() {
+                public void run() {
+                    benchmark.addValue(value, 1);
+                }
+            };
+            thread.start();
+            thread.join();
+        }
+        benchmark.addValue(value, 1);
+        assertEquals("101.0", benchmark.getResults().iterator().next().get("Value", "Count"));
+        Field field = benchmark.getClass().getDeclaredField("shards");
+        field.setAccessible(true);
+        assertEquals(1, ((List<?>) field.get(benchmark)).size());
+    }
+
+    private void run(final Benchmark benchmark, final int time) throws InterruptedException {
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(new Thread() {
+                public void run() {
+                    for (int j = 0; j < 10; j++) {
+                        benchmark.startTimer(time);
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            // Ignore
+                        }
+                        benchmark.addStopTimer(time);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
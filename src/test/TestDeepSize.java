@@ -0,0 +1,192 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.junit.Test;
+
+import de.linearbits.subframe.Measures;
+import de.linearbits.subframe.Measures.Visibility;
+
+/**
+ * Class with JUnit tests for computing deep sizes. The tests install a stub instrumentation via
+ * {@link Measures#premain(String, Instrumentation)}, which reports 16 bytes for objects and 16
+ * bytes plus one byte per element for arrays
+ * @author Fabian Prasser
+ */
+public class TestDeepSize extends TestBase {
+
+    /** Instrumentation installed before the test, if any */
+    private Object previous;
+
+    /**
+     * A node with fields of different visibility
+     * @author Fabian Prasser
+     */
+    @SuppressWarnings("unused")
+    private static class Node {
+        
+        /** Public reference */
+        public Node    next;
+        /** Private reference */
+        private Object data;
+        /** Package-private reference */
+        Object         other;
+        /** Primitive field */
+        private long   value;
+        /** Static reference */
+        private static Object ignored = new Object[100];
+    }
+
+    @Test
+    public void testCycles() {
+        Node a = new Node();
+        Node b = new Node();
+        a.next = b;
+        b.next = a;
+        a.data = a;
+        assertEquals(32L, getDeepSize(a, Visibility.ALL, false));
+    }
+
+    @Test
+    public void testShared() {
+        Node root = new Node();
+        Node a = new Node();
+        Node b = new Node();
+        Node shared = new Node();
+        root.next = a;
+        root.data = b;
+        a.data = shared;
+        b.data = shared;
+        b.other = shared;
+        assertEquals(64L, getDeepSize(root, Visibility.ALL, false));
+    }
+
+    @Test
+    public void testArrays() {
+        Node a = new Node();
+        Node b = new Node();
+        a.next = new Node();
+        a.next.next = new Node();
+        Object[] array = new Object[] { a, b, a, null };
+        
+        // 20 bytes for the array and 16 bytes for each of the four nodes
+        assertEquals(84L, getDeepSize(array, Visibility.ALL, false));
+        
+        // 20 bytes for the array and 16 bytes for each of the three non-null elements
+        assertEquals(68L, getDeepSize(array, Visibility.ALL, true));
+        
+        // Primitive arrays are not scanned
+        a.data = new int[10];
+        assertEquals(26L, getDeepSize(a.data, Visibility.ALL, false));
+        assertEquals(110L, getDeepSize(array, Visibility.ALL, false));
+    }
+
+    @Test
+    public void testVisibility() {
+        Node root = new Node();
+        root.next = new Node();
+        root.data = new Node();
+        root.other = new Node();
+        
+        // Public, private and package-private references
+        assertEquals(64L, getDeepSize(root, Visibility.ALL, false));
+        
+        // Private and package-private references
+        assertEquals(48L, getDeepSize(root, Visibility.NON_PUBLIC, false));
+        
+        // Private references
+        assertEquals(32L, getDeepSize(root, Visibility.PRIVATE_ONLY, false));
+        
+        // No references
+        assertEquals(16L, getDeepSize(root, Visibility.NONE, false));
+    }
+
+    @Test
+    public void testRepeated() {
+        Node a = new Node();
+        a.next = new Node();
+        Node b = new Node();
+        b.next = a;
+        
+        // Objects visited by a previous call are counted again
+        Measures measures = new Measures(0);
+        assertEquals(32L, measures.getDeepSize(a));
+        assertEquals(48L, measures.getDeepSize(b));
+        assertEquals(32L, measures.getDeepSize(a));
+        
+        // Larger graphs than the initial capacity of the engine
+        Node[] array = new Node[10000];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = new Node();
+        }
+        assertEquals(16L + array.length + 16L * array.length, measures.getDeepSize(array));
+        assertEquals(48L, measures.getDeepSize(b));
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        previous = getInstrumentationField().get(null);
+        Instrumentation instrumentation = (Instrumentation) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                                                   new Class<?>[] { Instrumentation.class },
+                                                                                   new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (!method.getName().equals("getObjectSize")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                Object object = args[0];
+                return object.getClass().isArray() ? 16L + Array.getLength(object) : 16L;
+            }
+        });
+        Measures.premain(null, instrumentation);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getInstrumentationField().set(null, previous);
+    }
+
+    /**
+     * Returns the deep size computed with the stub instrumentation
+     * @param object
+     * @param filter
+     * @param estimateArrays
+     * @return
+     */
+    private long getDeepSize(Object object, Visibility filter, boolean estimateArrays) {
+        return new Measures(0).getDeepSize(object, filter, estimateArrays);
+    }
+
+    /**
+     * Returns the static field of the measurement class holding the instrumentation, which is
+     * restored after each test. The instrumentation can only be set via the public agent API.
+     * @return
+     * @throws NoSuchFieldException
+     */
+    private Field getInstrumentationField() throws NoSuchFieldException {
+        Field field = Measures.class.getDeclaredField("instrumentation");
+        field.setAccessible(true);
+        return field;
+    }
+}
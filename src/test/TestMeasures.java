@@ -0,0 +1,207 @@
+/*
+ * SUBFRAME - Simple Java Benchmarking Framework
+ * Copyright (C) 2012 - 2016 Fabian Prasser and contributors
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import de.linearbits.subframe.Benchmark;
+import de.linearbits.subframe.Calibration;
+import de.linearbits.subframe.Calibration.Clock;
+import de.linearbits.subframe.GarbageCollection;
+import de.linearbits.subframe.GarbageCollection.Activity;
+import de.linearbits.subframe.Measures;
+import de.linearbits.subframe.analyzer.Analyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedCountAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedMaxAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedMinAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.BufferedSumAnalyzer;
+import de.linearbits.subframe.analyzer.buffered.SampleBufferCompressed;
+import de.linearbits.subframe.analyzer.stream.StreamCountAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamMinAnalyzer;
+import de.linearbits.subframe.analyzer.stream.StreamSumAnalyzer;
+import de.linearbits.subframe.io.CSVLine;
+
+/**
+ * Class with JUnit tests
+ * @author Fabian Prasser
+ */
+public class TestMeasures extends TestBase {
+
+    /** Prevents allocations from being eliminated */
+    private static volatile Object sink;
+
+    @Test
+    public void testAllocatedBytes() {
+        Benchmark benchmark = new Benchmark();
+        int measure = benchmark.addMeasure("Allocated");
+        benchmark.addAnalyzer(measure, new StreamMinAnalyzer());
+        benchmark.addRun("Test");
+        for (int i = 0; i < 10; i++) {
+            benchmark.startAllocatedBytes(measure);
+            sink = new byte[1024 * 1024];
+            benchmark.addStopAllocatedBytes(measure);
+        }
+        assertNotNull(sink);
+        double min = Double.valueOf(benchmark.getResults().iterator().next().get("Allocated", Analyzer.MINIMUM));
+        assertTrue(min >= 1024 * 1024 || new Measures(1).getCurrentThreadAllocatedBytes() == 0);
+    }
+
+    @Test
+    public void testCpuTime() {
+        Measures measures = new Measures(1);
+        long current = measures.getCurrentThreadCpuTime();
+        long all = measures.getCpuTime();
+        assertTrue(all >= current);
+        assertTrue(all >= measures.getUserTime());
+        assertTrue(measures.getSystemTime() >= 0);
+    }
+
+    @Test
+    public void testHeavyGC() {
+        Measures measures = new Measures(1);
+        sink = new byte[8 * 1024 * 1024];
+        long start = System.nanoTime();
+        measures.startUsedBytesGC(0);
+        sink = null;
+        long freed = -measures.stopUsedBytesGC(0);
+        long time = (System.nanoTime() - start) / 1000000L;
+        assertTrue(freed >= 7 * 1024 * 1024);
+        assertTrue(time < 2000);
+    }
+
+    @Test
+    public void testGCActivity() {
+        Benchmark benchmark = new Benchmark();
+        int young = benchmark.addMeasure("Young");
+        int old = benchmark.addMeasure("Old");
+        int pause = benchmark.addMeasure("Pause");
+        benchmark.addAnalyzer(young, new StreamMinAnalyzer());
+        benchmark.addAnalyzer(old, new StreamMinAnalyzer());
+        benchmark.addAnalyzer(pause, new StreamMinAnalyzer());
+        benchmark.addRun("Test");
+        benchmark.startGCActivity(young, Activity.YOUNG_COLLECTIONS);
+        benchmark.startGCActivity(old, Activity.OLD_COLLECTIONS);
+        benchmark.startGCActivity(pause, Activity.PAUSE_TIME);
+        System.gc();
+        benchmark.addStopGCActivity(young, Activity.YOUNG_COLLECTIONS);
+        benchmark.addStopGCActivity(old, Activity.OLD_COLLECTIONS);
+        benchmark.addStopGCActivity(pause, Activity.PAUSE_TIME);
+
+        CSVLine line = benchmark.getResults().iterator().next();
+        double collections = Double.valueOf(line.get("Young", Analyzer.MINIMUM)) +
+                             Double.valueOf(line.get("Old", Analyzer.MINIMUM));
+        assertTrue(collections >= 1);
+        assertTrue(Double.valueOf(line.get("Pause", Analyzer.MINIMUM)) >= 0);
+        assertTrue(GarbageCollection.getInstance().get(Activity.RECLAIMED_BYTES) >= 0);
+    }
+
+    @Test
+    public void testCalibration() {
+        Calibration calibration = Calibration.getInstance();
+        assertTrue(calibration.getGranularity(Clock.WALL_CLOCK) > 0);
+        assertTrue(calibration.getOverhead(Clock.WALL_CLOCK) < 1000000L);
+        assertTrue(calibration.getOverhead(Clock.CURRENT_THREAD_CPU_TIME) >= 0);
+
+        // Empty timers are corrected, batches record one value per invocation
+        Benchmark corrected = new Benchmark();
+        Benchmark raw = new Benchmark();
+        int empty = corrected.addMeasure("Empty");
+        int batch = corrected.addMeasure("Batch");
+        raw.addMeasure("Empty");
+        corrected.addAnalyzer(empty, new StreamMinAnalyzer());
+        corrected.addGranularityAnalyzer(empty, Clock.WALL_CLOCK);
+        corrected.addAnalyzer(batch, new StreamCountAnalyzer());
+        raw.addAnalyzer(empty, new StreamMinAnalyzer());
+        corrected.setOverheadCorrection(true);
+        corrected.addRun("Test");
+        raw.addRun("Test");
+        for (int i = 0; i < 20000; i++) {
+            corrected.startTimer(empty);
+            corrected.addStopTimer(empty);
+            raw.startTimer(empty);
+            raw.addStopTimer(empty);
+        }
+        corrected.startTimer(batch);
+        corrected.addStopTimer(batch, 100);
+
+        CSVLine line = corrected.getResults().iterator().next();
+        double min = Double.valueOf(line.get("Empty", Analyzer.MINIMUM));
+        double minRaw = Double.valueOf(raw.getResults().iterator().next().get("Empty", Analyzer.MINIMUM));
+        assertTrue(min < minRaw || calibration.getOverhead(Clock.WALL_CLOCK) == 0);
+        assertNotNull(line.get("Empty", Analyzer.COUNT_BELOW(Analyzer.GRANULARITY)));
+        assertEquals("100.0", line.get("Batch", Analyzer.COUNT));
+    }
+
+    @Test
+    public void testCalibrationBeforeWrapping() {
+
+        // Correction enabled before wrapping applies to synchronized and thread-local instances
+        long overhead = Calibration.getInstance().getOverhead(Clock.WALL_CLOCK);
+        for (int i = 0; i < 2; i++) {
+            Benchmark[] wrappers = new Benchmark[2];
+            for (int j = 0; j < wrappers.length; j++) {
+                Benchmark benchmark = new Benchmark();
+                benchmark.addMeasure("Empty");
+                benchmark.addAnalyzer(0, new StreamMinAnalyzer());
+                benchmark.setOverheadCorrection(j == 0);
+                benchmark.addRun("Test");
+                wrappers[j] = i == 0 ? benchmark.getSynchronized() : benchmark.getThreadLocal();
+            }
+            for (int j = 0; j < 20000; j++) {
+                for (Benchmark wrapper : wrappers) {
+                    wrapper.startTimer(0);
+                    wrapper.addStopTimer(0);
+                }
+            }
+            double min = Double.valueOf(wrappers[0].getResults().iterator().next().get("Empty", Analyzer.MINIMUM));
+            double minRaw = Double.valueOf(wrappers[1].getResults().iterator().next().get("Empty", Analyzer.MINIMUM));
+            assertTrue(min < minRaw || overhead == 0);
+        }
+    }
+
+    @Test
+    public void testBatchedTimerCompressed() {
+        Benchmark benchmark = new Benchmark();
+        benchmark.setSampleBuffer(new SampleBufferCompressed());
+        int batch = benchmark.addMeasure("Batch");
+        int total = benchmark.addMeasure("Total");
+        benchmark.addAnalyzer(batch, new BufferedSumAnalyzer());
+        benchmark.addAnalyzer(batch, new BufferedCountAnalyzer());
+        benchmark.addAnalyzer(batch, new BufferedMaxAnalyzer());
+        benchmark.addAnalyzer(batch, new BufferedMinAnalyzer());
+        benchmark.addAnalyzer(total, new StreamSumAnalyzer());
+        benchmark.addRun("Test");
+
+        // Values of a batch are integral and sum up to the measured time
+        for (int i = 0; i < 10; i++) {
+            benchmark.startTimer(batch);
+            benchmark.startTimer(total);
+            for (int j = 0; j < 7; j++) {
+                Math.sqrt(j);
+            }
+            benchmark.addStopTimer(total);
+            benchmark.addStopTimer(batch, 7);
+        }
+        CSVLine line = benchmark.getResults().iterator().next();
+        assertEquals("70", line.get("Batch", Analyzer.COUNT));
+        double max = Double.valueOf(line.get("Batch", Analyzer.MAXIMUM));
+        double min = Double.valueOf(line.get("Batch", Analyzer.MINIMUM));
+        assertEquals(Math.floor(max), max, 0d);
+        assertEquals(Math.floor(min), min, 0d);
+        assertTrue(Double.valueOf(line.get("Batch", Analyzer.SUM)) >= Double.valueOf(line.get("Total", Analyzer.SUM)));
+    }
+}